@@ -25,10 +25,22 @@ android {
             )
         }
     }
+    buildFeatures {
+        // Metrics.ENABLED follows BuildConfig.DEBUG
+        buildConfig = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests.all {
+            // DB timing harness, off by default: ./gradlew :app:testDebugUnitTest -PdbBenchmarkRows=100000
+            it.systemProperty("dbBenchmark.rows", project.findProperty("dbBenchmarkRows") ?: "0")
+            it.systemProperty("dbBenchmark.out",
+                layout.buildDirectory.file("reports/benchmark/db-timings.json").get().asFile.path)
+        }
+    }
 }
 
 dependencies {
@@ -38,7 +50,9 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     implementation(libs.recyclerview)
+    implementation(libs.exifinterface)
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
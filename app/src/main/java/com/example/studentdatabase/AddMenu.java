@@ -1,8 +1,6 @@
 package com.example.studentdatabase;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.widget.AdapterView;
@@ -17,10 +15,10 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.io.InputStream;
-
 public class AddMenu extends AppCompatActivity implements AdapterView.OnItemSelectedListener {
 
+    private static final int PREVIEW_SIZE = 500;
+
     Spinner programSpinner;
     Button saveButton, cancelButton;
     EditText studentName;
@@ -28,6 +26,7 @@ public class AddMenu extends AppCompatActivity implements AdapterView.OnItemSele
 
     String selectedProgram = "";
     Uri selectedImageUri = null;
+    boolean imagePicked = false;  // picked here, rather than the row's saved photo
 
     boolean isEdit = false;
     int studentId = -1;
@@ -36,11 +35,10 @@ public class AddMenu extends AppCompatActivity implements AdapterView.OnItemSele
     private final ActivityResultLauncher<String[]> pickImageLauncher =
             registerForActivityResult(new ActivityResultContracts.OpenDocument(), uri -> {
                 if (uri != null) {
+                    // Read again only when saving, into the image store, so no lasting grant is needed
                     selectedImageUri = uri;
-                    resizeAndSetImage(uri);
-                    final int takeFlags = (Intent.FLAG_GRANT_READ_URI_PERMISSION |
-                            Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
-                    getContentResolver().takePersistableUriPermission(uri, takeFlags);
+                    imagePicked = true;
+                    showPreview(uri);
                 }
             });
 
@@ -79,6 +77,12 @@ public class AddMenu extends AppCompatActivity implements AdapterView.OnItemSele
         cancelButton.setOnClickListener(v -> finish());
     }
 
+    @Override
+    protected void onDestroy() {
+        ImageLoader.getInstance(this).cancel(personImg);
+        super.onDestroy();
+    }
+
     /**
      * ✅ Setup edit mode
      */
@@ -96,7 +100,7 @@ public class AddMenu extends AppCompatActivity implements AdapterView.OnItemSele
         // Prefill image if exists
         if (image != null && !image.isEmpty()) {
             selectedImageUri = Uri.parse(image);
-            resizeAndSetImage(selectedImageUri);
+            showPreview(selectedImageUri);
         }
 
         saveButton.setText("Update");
@@ -124,19 +128,18 @@ public class AddMenu extends AppCompatActivity implements AdapterView.OnItemSele
             return;
         }
 
-        String imageUriStr = selectedImageUri.toString();
-
-        DBHelper db = new DBHelper(this);
-        long result = db.addStudent(new Student(nameInput, selectedProgram, imageUriStr));
-
-        if (result != -1) {
-            Toast.makeText(this, "Student added", Toast.LENGTH_SHORT).show();
-            setResult(RESULT_OK);
-        } else {
-            Toast.makeText(this, "Insert failed", Toast.LENGTH_SHORT).show();
-        }
-
-        finish();
+        saveButton.setEnabled(false);
+        storeImage(imageUriStr -> StudentRepository.getInstance(this).addStudent(
+                new Student(nameInput, selectedProgram, imageUriStr), result -> {
+                    if (result != -1) {
+                        Toast.makeText(this, "Student added", Toast.LENGTH_SHORT).show();
+                        setResult(RESULT_OK, new Intent().putExtra("id", result.intValue()));
+                    } else {
+                        Toast.makeText(this, "Insert failed", Toast.LENGTH_SHORT).show();
+                    }
+
+                    finish();
+                }));
     }
 
     /**
@@ -150,54 +153,48 @@ public class AddMenu extends AppCompatActivity implements AdapterView.OnItemSele
             return;
         }
 
-        String imageUriStr = selectedImageUri != null ? selectedImageUri.toString() : "";
-
-        DBHelper db = new DBHelper(this);
-        Student updated = new Student(studentId, nameInput, selectedProgram, imageUriStr);
-        int result = db.updateStudent(updated);
-
-        if (result > 0) {
-            Toast.makeText(this, "Student updated", Toast.LENGTH_SHORT).show();
-            setResult(RESULT_OK);
-        } else {
-            Toast.makeText(this, "Update failed", Toast.LENGTH_SHORT).show();
-        }
+        saveButton.setEnabled(false);
+        storeImage(imageUriStr -> {
+            Student updated = new Student(studentId, nameInput, selectedProgram, imageUriStr);
+            StudentRepository.getInstance(this).updateStudent(updated, ok -> {
+                if (ok) {
+                    Toast.makeText(this, "Student updated", Toast.LENGTH_SHORT).show();
+                    setResult(RESULT_OK, new Intent().putExtra("id", studentId));
+                } else {
+                    Toast.makeText(this, "Update failed", Toast.LENGTH_SHORT).show();
+                }
 
-        finish();
+                finish();
+            });
+        });
     }
 
     /**
-     * ✅ Resize and show selected image
+     * ✅ Copy the photo into the image store, then save with the stored copy's URI
      */
-    private void resizeAndSetImage(Uri uri) {
-        try {
-            InputStream inputStream = getContentResolver().openInputStream(uri);
-            Bitmap originalBitmap = BitmapFactory.decodeStream(inputStream);
-
-            if (originalBitmap != null) {
-                int maxSize = 500;
-                int width = originalBitmap.getWidth();
-                int height = originalBitmap.getHeight();
-                float ratio = (float) width / height;
-
-                int finalWidth, finalHeight;
-                if (ratio > 1) {
-                    finalWidth = maxSize;
-                    finalHeight = (int) (maxSize / ratio);
-                } else {
-                    finalHeight = maxSize;
-                    finalWidth = (int) (maxSize * ratio);
-                }
-
-                Bitmap resizedBitmap = Bitmap.createScaledBitmap(originalBitmap, finalWidth, finalHeight, true);
-                personImg.setImageBitmap(resizedBitmap);
+    private void storeImage(StudentRepository.Callback<String> save) {
+        if (selectedImageUri == null) {
+            save.onResult("");
+            return;
+        }
+        StudentRepository.getInstance(this).storeImage(selectedImageUri, stored -> {
+            if (stored != null) {
+                save.onResult(stored);
+            } else if (!imagePicked) {
+                // A photo saved before the store existed whose grant is gone: keep what the row had
+                save.onResult(selectedImageUri.toString());
+            } else {
+                Toast.makeText(this, "Failed to save image", Toast.LENGTH_SHORT).show();
+                saveButton.setEnabled(true);
             }
+        });
+    }
 
-            inputStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Failed to load image", Toast.LENGTH_SHORT).show();
-        }
+    /**
+     * ✅ Show the image, decoded and resized off the main thread; the default image stays if it can't be read
+     */
+    private void showPreview(Uri uri) {
+        ImageLoader.getInstance(this).load(personImg, uri.toString(), PREVIEW_SIZE, R.drawable.baseline_person_24);
     }
 
     /**
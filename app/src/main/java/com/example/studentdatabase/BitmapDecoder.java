@@ -0,0 +1,136 @@
+package com.example.studentdatabase;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes photos straight to display size. Bounds are read first, the decoder
+ * subsamples by the largest power of two that keeps the image at least as
+ * big as the target, and only the small remainder is scaled exactly. JPEGs
+ * (no alpha) decode as RGB_565, and decode intermediates are recycled
+ * through a {@link BitmapPool}.
+ */
+public class BitmapDecoder {
+
+    private static final String TAG = "BitmapDecoder";
+    private static final long POOL_BYTES = 4L * 1024 * 1024;
+
+    private static volatile BitmapDecoder instance;
+
+    public static BitmapDecoder getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (BitmapDecoder.class) {
+                if (instance == null) {
+                    instance = new BitmapDecoder(context.getApplicationContext().getContentResolver(),
+                            new BitmapPool(POOL_BYTES));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final ContentResolver resolver;
+    private final BitmapPool pool;
+
+    BitmapDecoder(ContentResolver resolver, BitmapPool pool) {
+        this.resolver = resolver;
+        this.pool = pool;
+    }
+
+    /**
+     * Decodes {@code uri} so its longer side is {@code maxSize}, keeping the
+     * aspect ratio. Returns null if the image can't be read.
+     */
+    @Nullable
+    public Bitmap decode(Uri uri, int maxSize) {
+        long start = Metrics.begin(Metrics.DECODE);
+        try {
+            return decodeScaled(uri, maxSize, true);
+        } finally {
+            Metrics.end(Metrics.DECODE, start);
+        }
+    }
+
+    /**
+     * Decodes {@code uri} at full color depth for re-encoding, shrunk so its
+     * longer side is at most {@code maxSize} but never enlarged. Returns null
+     * if the image can't be read.
+     */
+    @Nullable
+    public Bitmap decodeAtMost(Uri uri, int maxSize) {
+        long start = Metrics.begin(Metrics.DECODE);
+        try {
+            return decodeScaled(uri, maxSize, false);
+        } finally {
+            Metrics.end(Metrics.DECODE, start);
+        }
+    }
+
+    // For display: exactly maxSize, JPEGs as RGB_565. Otherwise: at most maxSize, ARGB_8888.
+    @Nullable
+    private Bitmap decodeScaled(Uri uri, int maxSize, boolean forDisplay) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Failed to read bounds of " + uri, e);
+            return null;
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+        if (!forDisplay) maxSize = Math.min(maxSize, Math.max(bounds.outWidth, bounds.outHeight));
+        int[] target = ImageScaling.targetSize(bounds.outWidth, bounds.outHeight, maxSize);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = ImageScaling.sampleSize(bounds.outWidth, bounds.outHeight, target[0], target[1]);
+        options.inPreferredConfig = forDisplay && "image/jpeg".equals(bounds.outMimeType)
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+
+        Bitmap sampled = decodeWithReuse(uri, options, bounds);
+        if (sampled == null) return null;
+        Metrics.add(Metrics.DECODED_BYTES, sampled.getAllocationByteCount());
+        if (sampled.getWidth() == target[0] && sampled.getHeight() == target[1]) return sampled;
+
+        Bitmap scaled = Bitmap.createScaledBitmap(sampled, target[0], target[1], true);
+        if (scaled != sampled) pool.put(sampled);
+        return scaled;
+    }
+
+    @Nullable
+    private Bitmap decodeWithReuse(Uri uri, BitmapFactory.Options options, BitmapFactory.Options bounds) {
+        int sampledWidth = (bounds.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int sampledHeight = (bounds.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        int bytesPerPixel = options.inPreferredConfig == Bitmap.Config.RGB_565 ? 2 : 4;
+        options.inBitmap = pool.get(sampledWidth * sampledHeight * bytesPerPixel);
+
+        try {
+            return decodeStream(uri, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap didn't fit this image; decode into a fresh one
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            return decodeStream(uri, options);
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) {
+        try (InputStream in = resolver.openInputStream(uri)) {
+            return BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Failed to decode " + uri, e);
+            return null;
+        }
+    }
+}
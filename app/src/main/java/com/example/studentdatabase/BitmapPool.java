@@ -0,0 +1,87 @@
+package com.example.studentdatabase;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Mutable bitmaps kept for {@code BitmapFactory.Options.inBitmap}. Bitmaps are
+ * bucketed by the power of two at or below their allocation size, so a
+ * request only looks at buckets whose members are guaranteed big enough.
+ * Only bitmaps nobody displays (decode intermediates) may be put here.
+ */
+public class BitmapPool {
+
+    private static final int BUCKETS = 31;
+    private static final int MAX_BUCKET_SPAN = 2;  // accept at most ~4x the needed bytes
+
+    private final long maxBytes;
+    private final ArrayDeque<Bitmap>[] buckets;
+    private final ArrayDeque<Bitmap> insertionOrder = new ArrayDeque<>();
+    private long currentBytes = 0;
+
+    @SuppressWarnings("unchecked")
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.buckets = new ArrayDeque[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new ArrayDeque<>();
+    }
+
+    /**
+     * A pooled bitmap with at least {@code bytes} of storage, or null.
+     */
+    @Nullable
+    public synchronized Bitmap get(int bytes) {
+        int first = ceilLog2(bytes);
+        for (int b = first; b < BUCKETS && b <= first + MAX_BUCKET_SPAN; b++) {
+            Bitmap bitmap = buckets[b].pollFirst();
+            if (bitmap != null) {
+                insertionOrder.remove(bitmap);
+                currentBytes -= bitmap.getAllocationByteCount();
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+        int size = bitmap.getAllocationByteCount();
+        if (size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        buckets[floorLog2(size)].addLast(bitmap);
+        insertionOrder.addLast(bitmap);
+        currentBytes += size;
+
+        // Evict the oldest until back under budget
+        while (currentBytes > maxBytes) {
+            Bitmap oldest = insertionOrder.pollFirst();
+            if (oldest == null) break;
+            buckets[floorLog2(oldest.getAllocationByteCount())].remove(oldest);
+            currentBytes -= oldest.getAllocationByteCount();
+            oldest.recycle();
+        }
+    }
+
+    public synchronized void clear() {
+        Iterator<Bitmap> it = insertionOrder.iterator();
+        while (it.hasNext()) it.next().recycle();
+        insertionOrder.clear();
+        for (ArrayDeque<Bitmap> bucket : buckets) bucket.clear();
+        currentBytes = 0;
+    }
+
+    private static int floorLog2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(1, value));
+    }
+
+    private static int ceilLog2(int value) {
+        int floor = floorLog2(value);
+        return (1 << floor) == value ? floor : floor + 1;
+    }
+}
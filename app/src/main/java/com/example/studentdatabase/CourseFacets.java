@@ -0,0 +1,46 @@
+package com.example.studentdatabase;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Live student count per course. Loaded once from an indexed GROUP BY, then
+ * adjusted by {@link DBHelper} as writes add, move or remove students, so
+ * the counts never need the table again. Rows without a course are not
+ * counted.
+ */
+final class CourseFacets {
+
+    @Nullable private TreeMap<String, Integer> counts;  // null until loaded
+
+    synchronized boolean isLoaded() {
+        return counts != null;
+    }
+
+    synchronized void load(Map<String, Integer> loaded) {
+        counts = new TreeMap<>(loaded);
+    }
+
+    // Forget the counts, e.g. after a rollback they can't be adjusted back from
+    synchronized void unload() {
+        counts = null;
+    }
+
+    synchronized void adjust(@Nullable String course, int delta) {
+        if (counts == null || course == null || course.isEmpty()) return;
+        int count = counts.getOrDefault(course, 0) + delta;
+        if (count > 0) {
+            counts.put(course, count);
+        } else {
+            counts.remove(course);
+        }
+    }
+
+    // Sorted by course; a copy, safe to hand to another thread
+    synchronized Map<String, Integer> snapshot() {
+        return counts == null ? new LinkedHashMap<>() : new LinkedHashMap<>(counts);
+    }
+}
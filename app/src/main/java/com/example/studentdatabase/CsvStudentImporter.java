@@ -0,0 +1,144 @@
+package com.example.studentdatabase;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams a "name,course,image" CSV into {@link DBHelper#bulkInsert}. Rows are
+ * parsed lazily, so the whole file is never held in memory. A header row is
+ * skipped when it is exactly "name,course" or "name,course,image" (any case),
+ * so a student who happens to be called Name is still imported.
+ */
+public class CsvStudentImporter {
+
+    private static final String[] HEADER = {"name", "course", "image"};
+
+    private final DBHelper dbHelper;
+
+    public CsvStudentImporter(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    public ImportResult importCsv(InputStream in, int batchSize,
+                                  @Nullable DBHelper.ImportListener listener) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return dbHelper.bulkInsert(new RowIterator(reader), batchSize, listener);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // --- Lazily parses one record per next() ---
+    static class RowIterator implements Iterator<Student> {
+        private final BufferedReader reader;
+        private List<String> pending;
+        private boolean headerChecked = false;
+
+        RowIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending == null) {
+                try {
+                    pending = readRecord(reader);
+                    if (!headerChecked) {
+                        headerChecked = true;
+                        if (pending != null && isHeader(pending)) pending = readRecord(reader);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return pending != null;
+        }
+
+        @Override
+        public Student next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            List<String> fields = pending;
+            pending = null;
+
+            String name = fields.size() > 0 ? fields.get(0).trim() : null;
+            String course = fields.size() > 1 ? fields.get(1).trim() : null;
+            String image = fields.size() > 2 ? fields.get(2).trim() : null;
+            return new Student(name, course, image);
+        }
+    }
+
+    static boolean isHeader(List<String> fields) {
+        if (fields.size() < 2 || fields.size() > HEADER.length) return false;
+        for (int i = 0; i < fields.size(); i++) {
+            if (!fields.get(i).trim().equalsIgnoreCase(HEADER[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads one RFC 4180 record: quoted fields may hold commas, doubled quotes
+     * and line breaks. Blank lines are skipped. Returns null at end of input.
+     */
+    static List<String> readRecord(BufferedReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean sawAny = false;
+        int c;
+
+        while ((c = reader.read()) != -1) {
+            char ch = (char) c;
+            if (inQuotes) {
+                if (ch == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        if (next != -1) reader.reset();
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                inQuotes = true;
+                sawAny = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                sawAny = true;
+            } else if (ch == '\n' || ch == '\r') {
+                if (ch == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') reader.reset();
+                }
+                if (sawAny || field.length() > 0) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+                // blank line, keep reading
+            } else {
+                field.append(ch);
+                sawAny = true;
+            }
+        }
+
+        if (sawAny || field.length() > 0) {
+            fields.add(field.toString());
+            return fields;
+        }
+        return null;
+    }
+}
@@ -1,20 +1,124 @@
 package com.example.studentdatabase;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Locale;
 
 public class DBHelper extends SQLiteOpenHelper {
 
     static final String DATABASE = "school.db";
     static final String STUDENTS = "students";
+    static final String STUDENTS_FTS = "students_fts";
+    static final int DEFAULT_BATCH_SIZE = 500;
+    // Space between neighbouring sort keys; a move takes the midpoint of its neighbours.
+    // Keys are unique over every row, tombstones included, so they can be restored in
+    // place: anything picking a key looks at all rows, never just LIVE ones.
+    static final long SORT_GAP = 1 << 16;
+    // Rows not tombstoned; every read filters on this
+    static final String LIVE = "deleted = 0";
+    // New rows go to the end of the custom order
+    static final String NEXT_SORT_KEY =
+            "(SELECT IFNULL(MAX(sort_key), 0) + " + SORT_GAP + " FROM " + STUDENTS + ")";
 
-    public DBHelper(@Nullable Context context) {
-        super(context, DATABASE, null, 12);
+    // --- Change tracking for StudentSync ---
+    static final String SYNC_STATE = "sync_state";
+    // Local change number; every write of a tracked column takes the next one
+    static final String NEXT_VERSION =
+            "(SELECT IFNULL(MAX(version), 0) + 1 FROM " + STUDENTS + ")";
+    // 128 random bits: the row's id at the registrar and on every other device
+    static final String NEW_REMOTE_ID = "lower(hex(randomblob(16)))";
+    // Tombstones nobody needs any more: the delete was sent, or the registrar never had the row
+    static final String PURGEABLE = "deleted = 1 AND (dirty = 0 OR server_version = 0)";
+    // Binds name, course, image and updated_at
+    static final String INSERT_STUDENT = "INSERT INTO " + STUDENTS +
+            " (name, course, image, sort_key, remote_id, version, updated_at, dirty) VALUES (?, ?, ?, " +
+            NEXT_SORT_KEY + ", " + NEW_REMOTE_ID + ", " + NEXT_VERSION + ", ?, 1)";
+
+    private static volatile DBHelper instance;
+
+    private final CourseFacets facets = new CourseFacets();
+    private final TrigramIndex trigrams = new TrigramIndex();
+
+    @Nullable private StudentDao dao;  // compiled on first use
+
+    /**
+     * Process-wide helper. The underlying connection pool is opened once and
+     * shared by every screen, so taps and swipes never pay the open cost again.
+     */
+    public static DBHelper getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (DBHelper.class) {
+                if (instance == null) {
+                    instance = new DBHelper(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the shared connection. Only needed when the whole process is
+     * done with the database (tests, data wipe); the next getInstance reopens it.
+     */
+    public static void closeInstance() {
+        synchronized (DBHelper.class) {
+            if (instance != null) {
+                instance.close();
+                instance = null;
+            }
+        }
+    }
+
+    private DBHelper(@Nullable Context context) {
+        super(context, DATABASE, null, VERSION);
+        // WAL lets readers run alongside the single writer without taking the lock
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Precompiled single-row statements over the shared connection.
+     */
+    public synchronized StudentDao getDao() {
+        if (dao == null) {
+            dao = new StudentDao(getWritableDatabase());
+        }
+        return dao;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dao != null) {
+            dao.close();
+            dao = null;
+        }
+        super.close();
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // NORMAL is durable under WAL except for the last commit on power loss
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        // Negative value is KiB: ~4MB page cache
+        db.execSQL("PRAGMA cache_size = -4096");
+        db.execSQL("PRAGMA temp_store = MEMORY");
     }
 
 
@@ -27,106 +131,1063 @@ public class DBHelper extends SQLiteOpenHelper {
                 "image VARCHAR(50)" +
                 ")";
         sqLiteDatabase.execSQL(sql);
+        // Fresh installs go through the same steps as upgrades, so both end up identical
+        migrate(sqLiteDatabase, BASE_VERSION);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + STUDENTS);
-        onCreate(sqLiteDatabase);
+        if (oldVersion < BASE_VERSION) {
+            // Schemas older than the base are unknown; start over
+            dropSearchIndex(sqLiteDatabase);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + STUDENTS);
+            onCreate(sqLiteDatabase);
+            return;
+        }
+        migrate(sqLiteDatabase, oldVersion);
+    }
+
+    // ------------------------------
+    // SCHEMA MIGRATIONS
+    // ------------------------------
+    /**
+     * One schema step. Runs inside the open helper's upgrade transaction and
+     * must keep existing rows.
+     */
+    interface Migration {
+        void apply(SQLiteDatabase db);
+    }
+
+    // Oldest schema with a migration path: the plain students table
+    static final int BASE_VERSION = 12;
+
+    // MIGRATIONS[i] moves the schema from BASE_VERSION + i to BASE_VERSION + i + 1.
+    // Append only; never edit a step that has shipped.
+    private static final Migration[] MIGRATIONS = {
+            // 13: full-text search over name and course
+            DBHelper::createSearchIndex,
+            // 14: course filters and name sorts become index lookups
+            db -> {
+                db.execSQL("CREATE INDEX IF NOT EXISTS students_course ON " + STUDENTS + " (course)");
+                db.execSQL("CREATE INDEX IF NOT EXISTS students_name_nocase ON " + STUDENTS +
+                        " (name COLLATE NOCASE)");
+            },
+            // 15: persisted custom order, initially id order
+            db -> {
+                // A reorder only writes sort_key; keep it from churning the search index
+                db.execSQL("DROP TRIGGER IF EXISTS students_fts_bu");
+                db.execSQL("DROP TRIGGER IF EXISTS students_fts_au");
+                db.execSQL("CREATE TRIGGER students_fts_bu BEFORE UPDATE OF name, course ON " + STUDENTS +
+                        " BEGIN DELETE FROM " + STUDENTS_FTS + " WHERE docid = old.id; END");
+                db.execSQL("CREATE TRIGGER students_fts_au AFTER UPDATE OF name, course ON " + STUDENTS +
+                        " BEGIN INSERT INTO " + STUDENTS_FTS + " (docid, name, course)" +
+                        " VALUES (new.id, new.name, new.course); END");
+                db.execSQL("ALTER TABLE " + STUDENTS + " ADD COLUMN sort_key INTEGER");
+                db.execSQL("UPDATE " + STUDENTS + " SET sort_key = id * " + SORT_GAP);
+                // Covers tombstones too (from step 16): NEXT_SORT_KEY, moveStudent and
+                // respaceSortKeys all pick keys against every row to match
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS students_sort ON " + STUDENTS + " (sort_key)");
+            },
+            // 16: soft delete; tombstoned rows stay until the purger removes them
+            db -> {
+                db.execSQL("ALTER TABLE " + STUDENTS + " ADD COLUMN deleted INTEGER NOT NULL DEFAULT 0");
+                // Browse paging and seeking read only live keys, straight from this index
+                db.execSQL("CREATE INDEX IF NOT EXISTS students_live_sort ON " + STUDENTS +
+                        " (sort_key) WHERE " + LIVE);
+                db.execSQL("CREATE INDEX IF NOT EXISTS students_tombstones ON " + STUDENTS +
+                        " (id) WHERE deleted = 1");
+            },
+            // 17: per-course counts and course-filtered paging, both index-only
+            db -> {
+                db.execSQL("CREATE INDEX IF NOT EXISTS students_live_course ON " + STUDENTS +
+                        " (course, sort_key) WHERE " + LIVE);
+                // Superseded by the index above
+                db.execSQL("DROP INDEX IF EXISTS students_course");
+            },
+            // 18: change tracking for delta sync with the registrar
+            db -> {
+                db.execSQL("ALTER TABLE " + STUDENTS + " ADD COLUMN remote_id TEXT");
+                db.execSQL("ALTER TABLE " + STUDENTS + " ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("ALTER TABLE " + STUDENTS + " ADD COLUMN updated_at INTEGER NOT NULL DEFAULT 0");
+                // Registrar's change number of the row as last seen here; 0 if it never had it
+                db.execSQL("ALTER TABLE " + STUDENTS + " ADD COLUMN server_version INTEGER NOT NULL DEFAULT 0");
+                // Changed here since the registrar last accepted the row
+                db.execSQL("ALTER TABLE " + STUDENTS + " ADD COLUMN dirty INTEGER NOT NULL DEFAULT 0");
+                // Nothing has been sent yet, so every existing row is pending
+                db.execSQL("UPDATE " + STUDENTS + " SET remote_id = " + NEW_REMOTE_ID +
+                        ", version = id, dirty = 1");
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS students_remote_id ON " + STUDENTS + " (remote_id)");
+                db.execSQL("CREATE INDEX IF NOT EXISTS students_version ON " + STUDENTS + " (version)");
+                // A push reads only pending rows, straight from this index
+                db.execSQL("CREATE INDEX IF NOT EXISTS students_dirty ON " + STUDENTS +
+                        " (version) WHERE dirty = 1");
+                db.execSQL("CREATE TABLE IF NOT EXISTS " + SYNC_STATE +
+                        " (key TEXT PRIMARY KEY, value TEXT NOT NULL)");
+                db.execSQL("INSERT OR IGNORE INTO " + SYNC_STATE + " (key, value) VALUES ('" +
+                        StudentSync.CLIENT_ID + "', " + NEW_REMOTE_ID + ")");
+            },
+            // 19: search folds accents like SearchText does, so "jose" finds "José"
+            db -> {
+                dropSearchIndex(db);
+                db.execSQL("CREATE VIRTUAL TABLE " + STUDENTS_FTS + " USING fts4(content=\"" + STUDENTS +
+                        "\", name, course, prefix=\"2,3\", tokenize=unicode61 \"remove_diacritics=1\")");
+                // As in step 15: a reorder only writes sort_key and leaves the index alone
+                db.execSQL("CREATE TRIGGER students_fts_bu BEFORE UPDATE OF name, course ON " + STUDENTS +
+                        " BEGIN DELETE FROM " + STUDENTS_FTS + " WHERE docid = old.id; END");
+                db.execSQL("CREATE TRIGGER students_fts_bd BEFORE DELETE ON " + STUDENTS +
+                        " BEGIN DELETE FROM " + STUDENTS_FTS + " WHERE docid = old.id; END");
+                db.execSQL("CREATE TRIGGER students_fts_au AFTER UPDATE OF name, course ON " + STUDENTS +
+                        " BEGIN INSERT INTO " + STUDENTS_FTS + " (docid, name, course)" +
+                        " VALUES (new.id, new.name, new.course); END");
+                db.execSQL("CREATE TRIGGER students_fts_ai AFTER INSERT ON " + STUDENTS +
+                        " BEGIN INSERT INTO " + STUDENTS_FTS + " (docid, name, course)" +
+                        " VALUES (new.id, new.name, new.course); END");
+                db.execSQL("INSERT INTO " + STUDENTS_FTS + " (" + STUDENTS_FTS + ") VALUES ('rebuild')");
+            },
+    };
+
+    static final int VERSION = BASE_VERSION + MIGRATIONS.length;
+
+    private static void migrate(SQLiteDatabase db, int fromVersion) {
+        for (int version = fromVersion; version < VERSION; version++) {
+            MIGRATIONS[version - BASE_VERSION].apply(db);
+        }
+        // Refresh planner statistics so the new indexes are picked up
+        db.execSQL("ANALYZE");
+    }
+
+    /**
+     * External-content FTS4 table over name and course. Triggers keep it in
+     * step with every insert, update and delete on the students table.
+     * Step 19 recreates it with an accent-folding tokenizer.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + STUDENTS_FTS +
+                " USING fts4(content=\"" + STUDENTS + "\", name, course, prefix=\"2,3\")");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS students_fts_bu BEFORE UPDATE ON " + STUDENTS +
+                " BEGIN DELETE FROM " + STUDENTS_FTS + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS students_fts_bd BEFORE DELETE ON " + STUDENTS +
+                " BEGIN DELETE FROM " + STUDENTS_FTS + " WHERE docid = old.id; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS students_fts_au AFTER UPDATE ON " + STUDENTS +
+                " BEGIN INSERT INTO " + STUDENTS_FTS + " (docid, name, course)" +
+                " VALUES (new.id, new.name, new.course); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS students_fts_ai AFTER INSERT ON " + STUDENTS +
+                " BEGIN INSERT INTO " + STUDENTS_FTS + " (docid, name, course)" +
+                " VALUES (new.id, new.name, new.course); END");
+        // Index rows that existed before the triggers
+        db.execSQL("INSERT INTO " + STUDENTS_FTS + " (" + STUDENTS_FTS + ") VALUES ('rebuild')");
+    }
+
+    private static void dropSearchIndex(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS students_fts_bu");
+        db.execSQL("DROP TRIGGER IF EXISTS students_fts_bd");
+        db.execSQL("DROP TRIGGER IF EXISTS students_fts_au");
+        db.execSQL("DROP TRIGGER IF EXISTS students_fts_ai");
+        db.execSQL("DROP TABLE IF EXISTS " + STUDENTS_FTS);
     }
 
     // ------------------------------
     // CREATE
     // ------------------------------
     public long addStudent(Student student) {
-        long result = -1;
+        long start = Metrics.begin(Metrics.DB_INSERT);
+        try {
+            long id = getDao().insert(student);
+            if (id != -1) {
+                facets.adjust(student.getCourse(), 1);
+                trigrams.put((int) id, student.getName(), student.getCourse());
+            }
+            return id;
+        } finally {
+            Metrics.end(Metrics.DB_INSERT, start);
+        }
+    }
+
+    // ------------------------------
+    // BULK INSERT
+    // ------------------------------
+    public interface ImportListener {
+        void onProgress(int processed, int inserted, int failed);
+    }
+
+    /**
+     * Inserts every student from the iterator through one compiled statement,
+     * committing every {@code batchSize} rows. A bad row is recorded in the
+     * result and skipped; it does not roll back the rest of its batch.
+     */
+    public ImportResult bulkInsert(Iterator<Student> students, int batchSize,
+                                   @Nullable ImportListener listener) {
+        if (batchSize <= 0) batchSize = DEFAULT_BATCH_SIZE;
+        ImportResult result = new ImportResult();
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put("name", student.getName());
-        cv.put("course", student.getCourse());
-        cv.put("image", student.getImage());
-        result = db.insert(STUDENTS, null, cv);
-        db.close();
+        SQLiteStatement insert = db.compileStatement(INSERT_STUDENT);
+        long now = System.currentTimeMillis();
+        int row = 0;
+        int inBatch = 0;
+
+        long start = Metrics.begin(Metrics.DB_BULK_INSERT);
+        try {
+            db.beginTransactionNonExclusive();
+            try {
+                while (students.hasNext()) {
+                    Student s = students.next();
+                    row++;
+
+                    if (s == null || s.getName() == null || s.getName().trim().isEmpty()) {
+                        result.addError(row, "Name is required");
+                    } else {
+                        // The stored name, so the trigram index matches what a search reads back
+                        String name = s.getName().trim();
+                        try {
+                            insert.bindString(1, name);
+                            bindStringOrNull(insert, 2, s.getCourse());
+                            bindStringOrNull(insert, 3, s.getImage());
+                            insert.bindLong(4, now);
+                            long id = insert.executeInsert();
+                            if (id == -1) {
+                                result.addError(row, "Insert failed");
+                            } else {
+                                s.setId((int) id);
+                                result.addInserted();
+                                facets.adjust(s.getCourse(), 1);
+                                trigrams.put((int) id, name, s.getCourse());
+                            }
+                        } catch (SQLException e) {
+                            result.addError(row, e.getMessage());
+                        }
+                    }
+
+                    if (++inBatch >= batchSize) {
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        if (listener != null) {
+                            listener.onProgress(row, result.getInserted(), result.getFailed());
+                        }
+                        db.beginTransactionNonExclusive();
+                        inBatch = 0;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            // The open batch rolled back, but its rows were already counted and indexed
+            unloadIndexes();
+            throw e;
+        } finally {
+            insert.close();
+            Metrics.end(Metrics.DB_BULK_INSERT, start);
+        }
+
+        if (listener != null && inBatch > 0) {
+            listener.onProgress(row, result.getInserted(), result.getFailed());
+        }
         return result;
     }
 
+    /**
+     * Forgets the in-memory course counts and trigram index, which reload on
+     * next use. For a caller whose transaction rolled back after writes here
+     * had already adjusted them.
+     */
+    void unloadIndexes() {
+        facets.unload();
+        trigrams.unload();
+    }
+
+    static void bindStringOrNull(SQLiteStatement statement, int index, @Nullable String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
     // ------------------------------
     // READ ALL
     // ------------------------------
     public ArrayList<Student> getAllStudents() {
-        ArrayList<Student> list = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(STUDENTS, null, null, null, null, null, null);
+        long start = Metrics.begin(Metrics.DB_READ_ALL);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = db.query(STUDENTS, StudentDao.ALL_COLUMNS, LIVE, null, null, null, "sort_key");
+
+            // ✅ Column indices are resolved once for the whole cursor
+            ArrayList<Student> list = StudentRowMapper.mapAll(cursor, cursor.getCount());
+            cursor.close();
+            return list;
+        } finally {
+            Metrics.end(Metrics.DB_READ_ALL, start);
+        }
+    }
+
+    // ------------------------------
+    // EXPORT (streamed)
+    // ------------------------------
+
+    /**
+     * Name, course and image of every live student, in the user's order.
+     * Read it front to back with moveToNext(): the cursor window is refilled
+     * as it goes, so memory stays flat however many rows there are. The
+     * caller closes the cursor.
+     */
+    public Cursor queryForExport(@Nullable CancellationSignal signal) {
+        return this.getReadableDatabase().rawQuery("SELECT name, course, image FROM " + STUDENTS +
+                " WHERE " + LIVE + " ORDER BY sort_key", null, signal);
+    }
+
+    // ------------------------------
+    // READ PAGED (keyset on sort_key)
+    // ------------------------------
+    public int countStudents() {
+        long start = Metrics.begin(Metrics.DB_COUNT);
+        try {
+            return (int) DatabaseUtils.queryNumEntries(this.getReadableDatabase(), STUDENTS, LIVE);
+        } finally {
+            Metrics.end(Metrics.DB_COUNT, start);
+        }
+    }
+
+    /**
+     * Up to {@code limit} students with a sort key greater than
+     * {@code afterKey}, in the user's order. Passing the last key of one page
+     * returns the next page without the row skipping an OFFSET would need.
+     */
+    public StudentPage getStudentsAfter(long afterKey, int limit) {
+        return getStudentsAfter(afterKey, limit, StudentDao.ALL_COLUMNS);
+    }
+
+    /**
+     * As above, reading only {@code columns}; the rest are left null.
+     */
+    public StudentPage getStudentsAfter(long afterKey, int limit, String[] columns) {
+        return getStudentsAfter(null, afterKey, limit, columns);
+    }
+
+    private StudentPage getStudentsAfter(@Nullable String course, long afterKey, int limit,
+                                         String[] columns) {
+        long start = Metrics.begin(Metrics.DB_PAGE);
+        try {
+            ArrayList<Student> list = getDao().getAfter(course, afterKey, limit, columns);
+            long lastKey = list.isEmpty() ? StudentPage.NO_KEY : list.get(list.size() - 1).getSortKey();
+            return new StudentPage(list, lastKey);
+        } finally {
+            Metrics.end(Metrics.DB_PAGE, start);
+        }
+    }
 
-        if (cursor.moveToFirst()) {
-            do {
-                int id = cursor.getInt(cursor.getColumnIndexOrThrow("id"));
-                String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-                String course = cursor.getString(cursor.getColumnIndexOrThrow("course"));
-                String image = cursor.getString(cursor.getColumnIndexOrThrow("image"));
+    /**
+     * Sort key of the row {@code offset} places after {@code afterKey}, or
+     * {@link StudentPage#NO_KEY}. Only reads the sort_key index; used to seek
+     * straight to a page whose key is unknown. The OFFSET steps over index
+     * entries from {@code afterKey}, the closest page key the pager has.
+     */
+    public long getSortKeyAfter(long afterKey, int offset) {
+        return getSortKeyAfter(null, afterKey, offset);
+    }
 
-                // ✅ Add the student to the list
-                list.add(new Student(id, name, course, image));
+    private long getSortKeyAfter(@Nullable String course, long afterKey, int offset) {
+        long start = Metrics.begin(Metrics.DB_SEEK);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = db.query(
+                    STUDENTS,
+                    new String[]{"sort_key"},
+                    keysetSelection(course),
+                    keysetArgs(course, afterKey),
+                    null,
+                    null,
+                    "sort_key",
+                    offset + ", 1"
+            );
 
-            } while (cursor.moveToNext());
+            long key = StudentPage.NO_KEY;
+            if (cursor.moveToFirst()) {
+                key = cursor.getLong(0);
+            }
+            cursor.close();
+            return key;
+        } finally {
+            Metrics.end(Metrics.DB_SEEK, start);
         }
+    }
 
-        cursor.close();
-        db.close();
-        return list;
+    // --- WHERE clause for sort_key paging, optionally within one course ---
+    static String keysetSelection(@Nullable String course) {
+        return course == null ? "sort_key > ? AND " + LIVE : "course = ? AND sort_key > ? AND " + LIVE;
     }
 
+    static String[] keysetArgs(@Nullable String course, long afterKey) {
+        return course == null
+                ? new String[]{String.valueOf(afterKey)}
+                : new String[]{course, String.valueOf(afterKey)};
+    }
 
     // ------------------------------
-    // READ BY ID
+    // COURSE FACETS
     // ------------------------------
-    public Student getStudentById(int id) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(
-                STUDENTS,
-                null,
-                "id = ?",
-                new String[]{String.valueOf(id)},
-                null,
-                null,
-                null
-        );
 
-        Student s = null;
-        if (cursor.moveToFirst()) {
-            String name = cursor.getString(cursor.getColumnIndexOrThrow("name"));
-            String course = cursor.getString(cursor.getColumnIndexOrThrow("course"));
-            String image = cursor.getString(cursor.getColumnIndexOrThrow("image"));
-            s = new Student(id, name, course, image);
+    /**
+     * Live students per course, sorted by course; rows without a course are
+     * left out. The first call runs a GROUP BY over the course index, and
+     * the writes in this class keep the counts current from then on. Make
+     * that first call on the writer thread, where no write is half applied.
+     */
+    public Map<String, Integer> getCourseCounts() {
+        long start = Metrics.begin(Metrics.DB_FACETS);
+        try {
+            synchronized (facets) {
+                if (!facets.isLoaded()) {
+                    Map<String, Integer> counts = new LinkedHashMap<>();
+                    Cursor cursor = this.getReadableDatabase().rawQuery(
+                            "SELECT course, COUNT(*) FROM " + STUDENTS + " WHERE " + LIVE +
+                                    " AND course IS NOT NULL AND course != '' GROUP BY course", null);
+                    while (cursor.moveToNext()) {
+                        counts.put(cursor.getString(0), cursor.getInt(1));
+                    }
+                    cursor.close();
+                    facets.load(counts);
+                }
+                return facets.snapshot();
+            }
+        } finally {
+            Metrics.end(Metrics.DB_FACETS, start);
+        }
+    }
+
+    public int countStudentsInCourse(String course) {
+        long start = Metrics.begin(Metrics.DB_COUNT);
+        try {
+            return (int) DatabaseUtils.queryNumEntries(this.getReadableDatabase(), STUDENTS,
+                    "course = ? AND " + LIVE, new String[]{course});
+        } finally {
+            Metrics.end(Metrics.DB_COUNT, start);
         }
+    }
 
-        cursor.close();
-        db.close();
-        return s;
+    /**
+     * As {@link #getStudentsAfter(long, int)}, for one course.
+     */
+    public StudentPage getStudentsInCourseAfter(String course, long afterKey, int limit) {
+        return getStudentsAfter(course, afterKey, limit, StudentDao.ALL_COLUMNS);
+    }
+
+    public long getSortKeyInCourseAfter(String course, long afterKey, int offset) {
+        return getSortKeyAfter(course, afterKey, offset);
     }
 
     // ------------------------------
-    // UPDATE
+    // REORDER
     // ------------------------------
-    public int updateStudent(Student student) {
+    static final int NO_NEIGHBOUR = -1;
+
+    /**
+     * Moves a student between two others ({@link #NO_NEIGHBOUR} at either end
+     * of the list) by giving it the midpoint of the free keys between them.
+     * Only this row is written, unless the gap is used up and every key is
+     * respaced first.
+     *
+     * @return false if the student or a neighbour no longer exists
+     */
+    public boolean moveStudent(int id, int prevId, int nextId) {
+        long start = Metrics.begin(Metrics.DB_MOVE);
+        try {
+            long[] gap = freeKeysBetween(id, prevId, nextId);
+            if (gap == null) return false;
+
+            if (gap[1] != Long.MAX_VALUE && gap[1] - gap[0] < 2) {
+                respaceSortKeys();
+                gap = freeKeysBetween(id, prevId, nextId);
+            }
+            long key = gap[1] == Long.MAX_VALUE ? gap[0] + SORT_GAP : gap[0] + (gap[1] - gap[0]) / 2;
+            return getDao().setSortKey(id, key) > 0;
+        } finally {
+            Metrics.end(Metrics.DB_MOVE, start);
+        }
+    }
+
+    // --- Sort keys on either side of the drop position, or null if a neighbour is gone ---
+    @Nullable
+    private long[] freeKeysBetween(int id, int prevId, int nextId) {
+        // Deleted rows keep their keys until purged, and the unique index counts
+        // them, so the bounds are the nearest keys of any row, not just live ones
+        StudentDao dao = getDao();
+        long next = nextId == NO_NEIGHBOUR ? Long.MAX_VALUE : dao.sortKeyOf(nextId);
+        if (next == StudentPage.NO_KEY) return null;
+        if (prevId == NO_NEIGHBOUR) return new long[]{dao.sortKeyBefore(next, id), next};
+        long prev = dao.sortKeyOf(prevId);
+        if (prev == StudentPage.NO_KEY) return null;
+        return new long[]{prev, Math.min(next, dao.sortKeyAfter(prev, id))};
+    }
+
+    // --- Renumbers the whole order SORT_GAP apart, tombstones in their places; only when a gap is exhausted ---
+    private void respaceSortKeys() {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put("name", student.getName());
-        cv.put("course", student.getCourse());
-        cv.put("image", student.getImage());
+        StudentDao dao = getDao();
+        db.beginTransactionNonExclusive();
+        try {
+            // Negate first so the unique index never sees two rows with the same key
+            db.execSQL("UPDATE " + STUDENTS + " SET sort_key = -sort_key");
+            Cursor cursor = db.rawQuery("SELECT id FROM " + STUDENTS + " ORDER BY sort_key DESC", null);
+            long key = 0;
+            while (cursor.moveToNext()) {
+                key += SORT_GAP;
+                dao.setSortKey(cursor.getInt(0), key);
+            }
+            cursor.close();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
 
-        int result = db.update(STUDENTS, cv, "id = ?", new String[]{String.valueOf(student.getId())});
-        db.close();
-        return result;
+    // ------------------------------
+    // SEARCH (FTS, ranked, keyset on rank + id)
+    // ------------------------------
+
+    /**
+     * Rank 0: the name starts with the query; 1: a later word of the name
+     * does; 2: anything else FTS matched (course, multi-word queries).
+     */
+    private static final String SEARCH_RANKED =
+            "SELECT id, name, course, image, " +
+                    "CASE WHEN name LIKE ?1 ESCAPE '\\' THEN 0 " +
+                    "WHEN name LIKE ?2 ESCAPE '\\' THEN 1 ELSE 2 END AS rank " +
+                    "FROM " + STUDENTS + " WHERE " + LIVE + " AND id IN " +
+                    "(SELECT docid FROM " + STUDENTS_FTS + " WHERE " + STUDENTS_FTS + " MATCH ?3)";
+
+    private static final String SEARCH_AFTER =
+            " WHERE rank > CAST(?4 AS INTEGER) OR (rank = CAST(?4 AS INTEGER) AND id > CAST(?5 AS INTEGER))" +
+                    " ORDER BY rank, id";
+
+    public int countSearchResults(String query) {
+        long start = Metrics.begin(Metrics.DB_SEARCH_COUNT);
+        try {
+            String match = toMatchQuery(query);
+            if (match == null) return 0;
+            return (int) DatabaseUtils.longForQuery(this.getReadableDatabase(),
+                    "SELECT COUNT(*) FROM " + STUDENTS + " WHERE " + LIVE + " AND id IN " +
+                            "(SELECT docid FROM " + STUDENTS_FTS + " WHERE " + STUDENTS_FTS + " MATCH ?)",
+                    new String[]{match});
+        } finally {
+            Metrics.end(Metrics.DB_SEARCH_COUNT, start);
+        }
+    }
+
+    /**
+     * Up to {@code limit} ranked matches for {@code query} after the key of
+     * the previous page ({@link StudentPage#FIRST_KEY} for the first one).
+     */
+    public StudentPage searchStudents(String query, long afterKey, int limit) {
+        return searchStudents(query, afterKey, limit, null);
+    }
+
+    /**
+     * As above; a cancelled signal aborts the query with OperationCanceledException.
+     */
+    public StudentPage searchStudents(String query, long afterKey, int limit,
+                                      @Nullable CancellationSignal signal) {
+        long start = Metrics.begin(Metrics.DB_SEARCH);
+        try {
+            String[] args = searchArgs(query, afterKey);
+            if (args == null) return new StudentPage(new ArrayList<>(), StudentPage.NO_KEY);
+
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = db.rawQuery("SELECT * FROM (" + SEARCH_RANKED + ")" + SEARCH_AFTER
+                    + " LIMIT " + limit, args, signal);
+
+            ArrayList<Student> list = StudentRowMapper.mapAll(cursor, limit);
+            long lastKey = StudentPage.NO_KEY;
+            if (cursor.moveToLast()) {
+                lastKey = StudentPage.searchKey(cursor.getInt(cursor.getColumnIndexOrThrow("rank")),
+                        cursor.getInt(cursor.getColumnIndexOrThrow("id")));
+            }
+            cursor.close();
+            return new StudentPage(list, lastKey);
+        } finally {
+            Metrics.end(Metrics.DB_SEARCH, start);
+        }
+    }
+
+    /**
+     * The first {@code limit} ranked matches straight into columnar storage,
+     * for result sets small enough to keep and narrow in memory.
+     */
+    public StudentColumns searchColumns(String query, int limit, @Nullable CancellationSignal signal) {
+        long start = Metrics.begin(Metrics.DB_SEARCH);
+        try {
+            StudentColumns.Builder columns = new StudentColumns.Builder(limit);
+            String[] args = searchArgs(query, StudentPage.FIRST_KEY);
+            if (args == null) return columns.build();
+
+            Cursor cursor = this.getReadableDatabase().rawQuery("SELECT id, name, course, image FROM ("
+                    + SEARCH_RANKED + ")" + SEARCH_AFTER + " LIMIT " + limit, args, signal);
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getInt(0), cursor.getString(1), cursor.getString(2), cursor.getString(3));
+            }
+            Metrics.add(Metrics.DB_ROWS_READ, cursor.getCount());
+            cursor.close();
+            return columns.build();
+        } finally {
+            Metrics.end(Metrics.DB_SEARCH, start);
+        }
+    }
+
+    /**
+     * Key of the match {@code offset} places after {@code afterKey}, or
+     * {@link StudentPage#NO_KEY}.
+     * <p>
+     * OFFSET is fine here. rank is computed, so no index orders the matches:
+     * every search query, keyset pages included, runs the FTS match and sorts
+     * all of it before returning its first row. The skipped rows are only
+     * (rank, id) pairs from that sort, so a seek costs about one page read.
+     * A keyset walk would need the key of every page in between, which the
+     * pager doesn't have when it jumps.
+     */
+    public long getSearchKeyAfter(String query, long afterKey, int offset) {
+        long start = Metrics.begin(Metrics.DB_SEARCH_SEEK);
+        try {
+            String[] args = searchArgs(query, afterKey);
+            if (args == null) return StudentPage.NO_KEY;
+
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = db.rawQuery("SELECT rank, id FROM (" + SEARCH_RANKED + ")" + SEARCH_AFTER
+                    + " LIMIT 1 OFFSET " + offset, args);
+
+            long key = StudentPage.NO_KEY;
+            if (cursor.moveToFirst()) {
+                key = StudentPage.searchKey(cursor.getInt(0), cursor.getInt(1));
+            }
+            cursor.close();
+            return key;
+        } finally {
+            Metrics.end(Metrics.DB_SEARCH_SEEK, start);
+        }
+    }
+
+    @Nullable
+    private static String[] searchArgs(String query, long afterKey) {
+        String match = toMatchQuery(query);
+        if (match == null) return null;
+        String like = query.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return new String[]{
+                like + "%",
+                "% " + like + "%",
+                match,
+                String.valueOf(StudentPage.rankOf(afterKey)),
+                String.valueOf(StudentPage.idOf(afterKey))
+        };
+    }
+
+    /**
+     * Turns free text into an FTS prefix query: every word must match the
+     * start of a token in name or course. Operators and quotes are dropped.
+     */
+    @Nullable
+    static String toMatchQuery(@Nullable String query) {
+        if (query == null) return null;
+        StringBuilder match = new StringBuilder();
+        for (String token : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append(token).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+
+    // ------------------------------
+    // FUZZY SEARCH (in-memory trigram index)
+    // ------------------------------
+
+    public boolean isFuzzyIndexLoaded() {
+        return trigrams.isLoaded();
+    }
+
+    /**
+     * Reads every live name into the trigram index, unless already loaded.
+     * The writes in this class keep it current from then on, so call this
+     * on the writer thread, where no write is half applied.
+     */
+    public void loadFuzzyIndex() {
+        synchronized (trigrams) {
+            if (trigrams.isLoaded()) return;
+            trigrams.beginLoad();
+            Cursor cursor = this.getReadableDatabase().query(STUDENTS,
+                    new String[]{"id", "name", "course"}, LIVE, null, null, null, null);
+            while (cursor.moveToNext()) {
+                trigrams.put(cursor.getInt(0), cursor.getString(1), cursor.getString(2));
+            }
+            cursor.close();
+        }
+    }
+
+    /**
+     * Up to {@code limit} students whose name (and course) is within a few
+     * typos of {@code query}, closest first. Empty until
+     * {@link #loadFuzzyIndex} has run.
+     */
+    public StudentColumns fuzzySearch(String query, int limit) {
+        long start = Metrics.begin(Metrics.DB_FUZZY);
+        try {
+            int[] ids = trigrams.search(query, limit);
+            StudentColumns.Builder columns = new StudentColumns.Builder(ids.length);
+            if (ids.length == 0) return columns.build();
+
+            Map<Integer, Integer> rankOf = new HashMap<>();
+            StringBuilder placeholders = new StringBuilder();
+            String[] args = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                rankOf.put(ids[i], i);
+                placeholders.append(i == 0 ? "?" : ", ?");
+                args[i] = String.valueOf(ids[i]);
+            }
+            Cursor cursor = this.getReadableDatabase().rawQuery("SELECT id, name, course, image FROM " +
+                    STUDENTS + " WHERE " + LIVE + " AND id IN (" + placeholders + ")", args);
+            String[][] rows = new String[ids.length][];
+            while (cursor.moveToNext()) {
+                rows[rankOf.get(cursor.getInt(0))] =
+                        new String[]{cursor.getString(1), cursor.getString(2), cursor.getString(3)};
+            }
+            cursor.close();
+
+            // Back into rank order
+            for (int i = 0; i < ids.length; i++) {
+                if (rows[i] != null) columns.add(ids[i], rows[i][0], rows[i][1], rows[i][2]);
+            }
+            return columns.build();
+        } finally {
+            Metrics.end(Metrics.DB_FUZZY, start);
+        }
+    }
+
+    // ------------------------------
+    // READ BY ID
+    // ------------------------------
+    public Student getStudentById(int id) {
+        long start = Metrics.begin(Metrics.DB_FIND);
+        try {
+            return getDao().findById(id);
+        } finally {
+            Metrics.end(Metrics.DB_FIND, start);
+        }
     }
 
     // ------------------------------
-    // DELETE
+    // UPDATE
     // ------------------------------
+    public int updateStudent(Student student) {
+        long start = Metrics.begin(Metrics.DB_UPDATE);
+        try {
+            StudentDao dao = getDao();
+            Student before = dao.findById(student.getId());
+            int updated = dao.update(student);
+            if (updated > 0) trigrams.put(student.getId(), student.getName(), student.getCourse());
+            if (updated > 0 && before != null && !Objects.equals(before.getCourse(), student.getCourse())) {
+                facets.adjust(before.getCourse(), -1);
+                facets.adjust(student.getCourse(), 1);
+            }
+            return updated;
+        } finally {
+            Metrics.end(Metrics.DB_UPDATE, start);
+        }
+    }
+
+    // ------------------------------
+    // DELETE (tombstone, then purge)
+    // ------------------------------
+
+    /**
+     * Hides the student from every read. Undone by {@link #restoreStudent}
+     * until the row is purged.
+     */
     public int deleteStudent(int id) {
+        long start = Metrics.begin(Metrics.DB_DELETE);
+        try {
+            StudentDao dao = getDao();
+            Student before = dao.findById(id);
+            int deleted = before == null ? 0 : dao.setDeleted(id, true);
+            if (deleted > 0) {
+                facets.adjust(before.getCourse(), -1);
+                trigrams.remove(id);
+            }
+            return deleted;
+        } finally {
+            Metrics.end(Metrics.DB_DELETE, start);
+        }
+    }
+
+    public int restoreStudent(int id) {
+        long start = Metrics.begin(Metrics.DB_RESTORE);
+        try {
+            StudentDao dao = getDao();
+            if (dao.findById(id) != null) return 0;  // not deleted
+            int restored = dao.setDeleted(id, false);
+            Student after = restored > 0 ? dao.findById(id) : null;
+            if (after != null) {
+                facets.adjust(after.getCourse(), 1);
+                trigrams.put(id, after.getName(), after.getCourse());
+            }
+            return restored;
+        } finally {
+            Metrics.end(Metrics.DB_RESTORE, start);
+        }
+    }
+
+    /**
+     * Physically removes those of the given students that are still
+     * tombstoned, in one transaction. Tombstones whose delete the registrar
+     * hasn't received yet are kept until a sync sends it.
+     *
+     * @return image URIs of the removed rows, so their thumbnails can be dropped
+     */
+    public List<String> purgeStudents(List<Integer> ids) {
+        long start = Metrics.begin(Metrics.DB_PURGE);
+        try {
+            SQLiteDatabase db = this.getWritableDatabase();
+            StudentDao dao = getDao();
+            List<String> images = new ArrayList<>();
+            db.beginTransactionNonExclusive();
+            try {
+                for (int id : ids) {
+                    String image = dao.imageOf(id);
+                    if (dao.purge(id) > 0 && image != null) images.add(image);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return images;
+        } finally {
+            Metrics.end(Metrics.DB_PURGE, start);
+        }
+    }
+
+    /**
+     * Up to {@code limit} tombstoned ids that can be purged, e.g. left behind
+     * when the process died during an undo window.
+     */
+    public List<Integer> getDeletedIds(int limit) {
+        long start = Metrics.begin(Metrics.DB_DELETED_IDS);
+        try {
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = db.query(STUDENTS, new String[]{"id"}, PURGEABLE,
+                    null, null, null, null, String.valueOf(limit));
+            List<Integer> ids = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+            }
+            cursor.close();
+            return ids;
+        } finally {
+            Metrics.end(Metrics.DB_DELETED_IDS, start);
+        }
+    }
+
+    /**
+     * Every distinct image URI starting with {@code prefix}, tombstoned rows
+     * included, for {@link ImageStore#collectGarbage}.
+     */
+    public Set<String> getImagesUnder(String prefix) {
+        Cursor cursor = this.getReadableDatabase().rawQuery(
+                "SELECT DISTINCT image FROM " + STUDENTS + " WHERE substr(image, 1, ?) = ?",
+                new String[]{String.valueOf(prefix.length()), prefix});
+        try {
+            Set<String> images = new HashSet<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                images.add(cursor.getString(0));
+            }
+            return images;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // ------------------------------
+    // SYNC (see StudentSync)
+    // ------------------------------
+
+    @Nullable
+    public String getSyncState(String key) {
+        Cursor cursor = this.getReadableDatabase().rawQuery(
+                "SELECT value FROM " + SYNC_STATE + " WHERE key = ?", new String[]{key});
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void setSyncState(SQLiteDatabase db, String key, String value) {
+        db.execSQL("INSERT OR REPLACE INTO " + SYNC_STATE + " (key, value) VALUES (?, ?)",
+                new Object[]{key, value});
+    }
+
+    /**
+     * Up to {@code limit} rows changed here since the registrar last accepted
+     * them, tombstones included, in change order after {@code afterVersion}.
+     * Reads only the pending-row index, however large the roster.
+     */
+    public List<StudentSync.Change> getPendingChanges(long afterVersion, int limit) {
+        long start = Metrics.begin(Metrics.DB_SYNC_PENDING);
+        try {
+            Cursor cursor = this.getReadableDatabase().rawQuery(
+                    "SELECT remote_id, name, course, image, deleted, updated_at, server_version, version FROM " +
+                            STUDENTS + " WHERE dirty = 1 AND version > ?" +
+                            // A row deleted before the registrar ever had it has nothing to send
+                            " AND NOT (deleted = 1 AND server_version = 0) ORDER BY version LIMIT ?",
+                    new String[]{String.valueOf(afterVersion), String.valueOf(limit)});
+            try {
+                List<StudentSync.Change> changes = new ArrayList<>(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    changes.add(new StudentSync.Change(cursor.getString(0), cursor.getString(1),
+                            cursor.getString(2), cursor.getString(3), cursor.getInt(4) != 0,
+                            cursor.getLong(5), cursor.getLong(6), cursor.getLong(7)));
+                }
+                return changes;
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            Metrics.end(Metrics.DB_SYNC_PENDING, start);
+        }
+    }
+
+    /**
+     * Applies one page of registrar changes and moves the pull checkpoint
+     * past it, in one transaction, so an interrupted pull resumes after the
+     * last page that landed. Rows also changed here keep whichever edit is
+     * later ({@link StudentSync#remoteWins}).
+     */
+    public void applyRemoteChanges(List<StudentSync.Change> changes, String checkpointKey,
+                                   String checkpoint, StudentSync.Result result) {
+        applySync(null, changes, checkpointKey, checkpoint, result);
+    }
+
+    /**
+     * Records the registrar's answer to one push in one transaction: accepted
+     * rows take their new registrar version and stop being pending, unless
+     * they changed again meanwhile; rejected rows come back as the
+     * registrar's copy and are resolved like pulled changes.
+     */
+    public void applyPushResult(List<StudentSync.Change> accepted, List<StudentSync.Change> rejected,
+                                StudentSync.Result result) {
+        applySync(accepted, rejected, null, null, result);
+    }
+
+    private void applySync(@Nullable List<StudentSync.Change> accepted, List<StudentSync.Change> remote,
+                           @Nullable String checkpointKey, @Nullable String checkpoint,
+                           StudentSync.Result result) {
+        long start = Metrics.begin(Metrics.DB_SYNC_APPLY);
         SQLiteDatabase db = this.getWritableDatabase();
-        int result = db.delete(STUDENTS, "id = ?", new String[]{String.valueOf(id)});
-        db.close();
-        return result;
+        SQLiteStatement markPushed = db.compileStatement("UPDATE " + STUDENTS +
+                " SET server_version = ?, dirty = CASE WHEN version = ? THEN 0 ELSE dirty END WHERE remote_id = ?");
+        SQLiteStatement insertRemote = db.compileStatement("INSERT INTO " + STUDENTS +
+                " (name, course, image, sort_key, remote_id, version, updated_at, server_version, dirty)" +
+                " VALUES (?, ?, ?, " + NEXT_SORT_KEY + ", ?, " + NEXT_VERSION + ", ?, ?, 0)");
+        // A change without an image leaves the row's photo alone; see StudentSync.isPortable
+        SQLiteStatement updateRemote = db.compileStatement("UPDATE " + STUDENTS + " SET name = ?, course = ?," +
+                " image = IFNULL(?, image), deleted = ?, updated_at = ?, server_version = ?, dirty = 0 WHERE id = ?");
+        try {
+            db.beginTransactionNonExclusive();
+            try {
+                if (accepted != null) {
+                    for (StudentSync.Change change : accepted) {
+                        markPushed.bindLong(1, change.version);
+                        markPushed.bindLong(2, change.localVersion);
+                        markPushed.bindString(3, change.id);
+                        markPushed.executeUpdateDelete();
+                    }
+                    result.pushed += accepted.size();
+                }
+                for (StudentSync.Change change : remote) {
+                    applyRemoteChange(db, change, insertRemote, updateRemote, result);
+                }
+                if (checkpointKey != null) setSyncState(db, checkpointKey, checkpoint);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            // Rolled back after the counts and index were adjusted
+            unloadIndexes();
+            throw e;
+        } finally {
+            markPushed.close();
+            insertRemote.close();
+            updateRemote.close();
+            Metrics.end(Metrics.DB_SYNC_APPLY, start);
+        }
+    }
+
+    private void applyRemoteChange(SQLiteDatabase db, StudentSync.Change change,
+                                   SQLiteStatement insertRemote, SQLiteStatement updateRemote,
+                                   StudentSync.Result result) {
+        Cursor cursor = db.rawQuery("SELECT id, course, deleted, dirty, updated_at, server_version FROM " +
+                STUDENTS + " WHERE remote_id = ?", new String[]{change.id});
+        int id;
+        String courseBefore;
+        boolean liveBefore;
+        boolean dirty;
+        long updatedAt;
+        long serverVersion;
+        try {
+            if (!cursor.moveToFirst()) {
+                if (!change.deleted) insertRemote(change, insertRemote, result);
+                return;
+            }
+            id = cursor.getInt(0);
+            courseBefore = cursor.getString(1);
+            liveBefore = cursor.getInt(2) == 0;
+            dirty = cursor.getInt(3) != 0;
+            updatedAt = cursor.getLong(4);
+            serverVersion = cursor.getLong(5);
+        } finally {
+            cursor.close();
+        }
+
+        if (change.version <= serverVersion) return;  // seen already, e.g. our own push
+        if (dirty) {
+            result.conflicts++;
+            if (!StudentSync.remoteWins(updatedAt, change)) {
+                // The later local edit stands; the next push sends it on top of this version
+                db.execSQL("UPDATE " + STUDENTS + " SET server_version = ? WHERE id = ?",
+                        new Object[]{change.version, id});
+                return;
+            }
+        }
+
+        bindStringOrNull(updateRemote, 1, change.name);
+        bindStringOrNull(updateRemote, 2, change.course);
+        bindStringOrNull(updateRemote, 3, change.image);
+        updateRemote.bindLong(4, change.deleted ? 1 : 0);
+        updateRemote.bindLong(5, change.updatedAt);
+        updateRemote.bindLong(6, change.version);
+        updateRemote.bindLong(7, id);
+        updateRemote.executeUpdateDelete();
+
+        if (liveBefore) facets.adjust(courseBefore, -1);
+        if (change.deleted) {
+            trigrams.remove(id);
+        } else {
+            facets.adjust(change.course, 1);
+            trigrams.put(id, change.name, change.course);
+        }
+        result.applied(id);
+    }
+
+    private void insertRemote(StudentSync.Change change, SQLiteStatement insertRemote,
+                              StudentSync.Result result) {
+        bindStringOrNull(insertRemote, 1, change.name);
+        bindStringOrNull(insertRemote, 2, change.course);
+        bindStringOrNull(insertRemote, 3, change.image);
+        insertRemote.bindString(4, change.id);
+        insertRemote.bindLong(5, change.updatedAt);
+        insertRemote.bindLong(6, change.version);
+        int id = (int) insertRemote.executeInsert();
+        facets.adjust(change.course, 1);
+        trigrams.put(id, change.name, change.course);
+        result.applied(id);
     }
 }
@@ -0,0 +1,143 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads thumbnails into ImageViews off the main thread. Each view is tagged
+ * with its current request, so a result that arrives after the view was
+ * rebound is dropped. Requests for the same image and size share one decode.
+ * A request is cancelled once no view waits for it, unless it is a prefetch.
+ */
+public class ImageLoader {
+
+    private static final int DECODE_THREADS = 3;
+
+    private static volatile ImageLoader instance;
+
+    public static ImageLoader getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (ImageLoader.class) {
+                if (instance == null) {
+                    instance = new ImageLoader(ThumbnailCache.getInstance(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final ThumbnailCache cache;
+    private final ExecutorService executor = new ThreadPoolExecutor(
+            DECODE_THREADS, DECODE_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // In-flight decodes by cache key; main thread only
+    private final Map<String, Job> jobs = new HashMap<>();
+
+    private ImageLoader(ThumbnailCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Shows the thumbnail for {@code uri}, or {@code placeholder} until it is
+     * ready (and for good if it can't be decoded).
+     */
+    @MainThread
+    public void load(ImageView view, @Nullable String uri, int size, int placeholder) {
+        cancel(view);
+        if (uri == null || uri.isEmpty()) {
+            view.setImageResource(placeholder);
+            return;
+        }
+
+        Bitmap cached = cache.getFromMemory(uri, size);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        view.setImageResource(placeholder);
+        Job job = obtainJob(uri, size);
+        job.targets.add(view);
+        view.setTag(R.id.image_request, job);
+    }
+
+    /**
+     * Warms the caches for a row about to scroll into view.
+     */
+    @MainThread
+    public void prefetch(@Nullable String uri, int size) {
+        if (uri == null || uri.isEmpty() || cache.getFromMemory(uri, size) != null) return;
+        obtainJob(uri, size).prefetch = true;
+    }
+
+    /**
+     * Detaches the view from its pending request, cancelling the decode if
+     * nothing else is waiting for it.
+     */
+    @MainThread
+    public void cancel(ImageView view) {
+        Object tag = view.getTag(R.id.image_request);
+        if (!(tag instanceof Job)) return;
+        view.setTag(R.id.image_request, null);
+
+        Job job = (Job) tag;
+        job.targets.remove(view);
+        if (job.targets.isEmpty() && !job.prefetch) {
+            job.future.cancel(false);
+            jobs.remove(job.key);
+        }
+    }
+
+    private Job obtainJob(String uri, int size) {
+        String key = uri + "@" + size;
+        Job job = jobs.get(key);
+        if (job == null) {
+            Job created = new Job(key);
+            created.future = executor.submit(() -> {
+                Bitmap bitmap = cache.get(uri, size);
+                mainHandler.post(() -> deliver(created, bitmap));
+            });
+            jobs.put(key, created);
+            job = created;
+        }
+        return job;
+    }
+
+    private void deliver(Job job, @Nullable Bitmap bitmap) {
+        if (jobs.get(job.key) == job) jobs.remove(job.key);
+        for (ImageView view : job.targets) {
+            if (view.getTag(R.id.image_request) != job) continue;
+            view.setTag(R.id.image_request, null);
+            if (bitmap != null) view.setImageBitmap(bitmap);
+        }
+        job.targets.clear();
+    }
+
+    private static final class Job {
+        final String key;
+        final Set<ImageView> targets = new HashSet<>(2);
+        Future<?> future;
+        boolean prefetch;
+
+        Job(String key) {
+            this.key = key;
+        }
+    }
+}
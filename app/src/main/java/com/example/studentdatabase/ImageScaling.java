@@ -0,0 +1,31 @@
+package com.example.studentdatabase;
+
+/**
+ * Size arithmetic for thumbnail decoding. Plain Java, so the benchmark
+ * module can measure it without Android.
+ */
+final class ImageScaling {
+
+    private ImageScaling() {}
+
+    /**
+     * Width and height with the longer side equal to {@code maxSize}.
+     */
+    static int[] targetSize(int width, int height, int maxSize) {
+        float ratio = (float) width / height;
+        int finalWidth = ratio > 1 ? maxSize : Math.max(1, (int) (maxSize * ratio));
+        int finalHeight = ratio > 1 ? Math.max(1, (int) (maxSize / ratio)) : maxSize;
+        return new int[]{finalWidth, finalHeight};
+    }
+
+    /**
+     * Largest power of two that keeps both sides at or above the target.
+     */
+    static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sample = 1;
+        while (width / (sample * 2) >= targetWidth && height / (sample * 2) >= targetHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+}
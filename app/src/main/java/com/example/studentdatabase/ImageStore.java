@@ -0,0 +1,225 @@
+package com.example.studentdatabase;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Student photos, copied into app-private storage when a student is saved.
+ * A picked image is read from its provider once, hashed on the way in, and
+ * kept as an upright WebP no larger than {@link #MAX_SIZE}, named by the
+ * hash of the original bytes. Picking the same photo again, for any
+ * student, finds the stored file without decoding anything, and every row
+ * showing it shares one URI and so one set of thumbnails.
+ * <p>
+ * Rows keep the stored file's URI, so showing a photo is a small local
+ * read. Files are never rewritten in place; {@link #collectGarbage} removes
+ * the ones no row refers to any more.
+ */
+public class ImageStore {
+
+    private static final String TAG = "ImageStore";
+    private static final String DIR = "images";
+    private static final String SUFFIX = ".webp";
+    private static final int WEBP_QUALITY = 80;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // Unreferenced files younger than this stay: their row may not be saved yet
+    private static final long GRACE_MS = 24L * 60 * 60 * 1000;
+
+    static final int MAX_SIZE = 1024;  // longer side, px; well above any size the list shows
+
+    private static volatile ImageStore instance;
+
+    public static ImageStore getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (ImageStore.class) {
+                if (instance == null) {
+                    Context app = context.getApplicationContext();
+                    instance = new ImageStore(app.getContentResolver(), BitmapDecoder.getInstance(app),
+                            new File(app.getFilesDir(), DIR));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final ContentResolver resolver;
+    private final BitmapDecoder decoder;
+    private final File dir;
+    private final String uriPrefix;
+
+    ImageStore(ContentResolver resolver, BitmapDecoder decoder, File dir) {
+        this.resolver = resolver;
+        this.decoder = decoder;
+        this.dir = dir;
+        this.uriPrefix = Uri.fromFile(dir) + "/";
+    }
+
+    /**
+     * What every stored image's URI starts with.
+     */
+    public String getUriPrefix() {
+        return uriPrefix;
+    }
+
+    public boolean isStored(@Nullable String image) {
+        return image != null && image.startsWith(uriPrefix);
+    }
+
+    /**
+     * Stores the image at {@code source} and returns the URI to save in the
+     * row: the existing file's if the same bytes were stored before. Reads
+     * {@code source} once; an image that is already stored is returned as is.
+     */
+    @WorkerThread
+    public String ingest(Uri source) throws IOException {
+        if (isStored(source.toString())) return source.toString();
+        long start = Metrics.begin(Metrics.INGEST);
+        try {
+            if (!dir.exists() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+            File copy = File.createTempFile("ingest", ".tmp", dir);
+            try {
+                File stored = new File(dir, copy(source, copy) + SUFFIX);
+                // Touched, so a collection running meanwhile leaves it for the row about to use it
+                if (stored.exists() && stored.setLastModified(System.currentTimeMillis())) {
+                    return Uri.fromFile(stored).toString();
+                }
+                transcode(copy, stored);
+                return Uri.fromFile(stored).toString();
+            } finally {
+                copy.delete();
+            }
+        } finally {
+            Metrics.end(Metrics.INGEST, start);
+        }
+    }
+
+    /**
+     * Deletes stored files not in {@code referenced}, the image URIs still in
+     * the table (tombstones included, since they can be restored), except
+     * recent ones. Returns the URIs of the deleted files.
+     */
+    @WorkerThread
+    public List<String> collectGarbage(Set<String> referenced) {
+        List<String> deleted = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) return deleted;
+        long cutoff = System.currentTimeMillis() - GRACE_MS;
+        for (File file : files) {
+            String uri = Uri.fromFile(file).toString();
+            // Leftover temporary files are never referenced, so they go too
+            if (referenced.contains(uri) || file.lastModified() > cutoff) continue;
+            if (file.delete()) deleted.add(uri);
+        }
+        if (!deleted.isEmpty()) Log.i(TAG, "Removed " + deleted.size() + " unused images");
+        return deleted;
+    }
+
+    // --- Copies source to a local file and returns the hex SHA-256 of its bytes ---
+    private String copy(Uri source, File to) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // every Android version has it
+        }
+        try (InputStream in = resolver.openInputStream(source);
+             OutputStream out = new FileOutputStream(to)) {
+            if (in == null) throw new IOException("Nothing to read at " + source);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        } catch (SecurityException e) {
+            throw new IOException("No permission to read " + source, e);
+        }
+        byte[] bytes = digest.digest();
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    // --- Decodes the local copy, turns it upright and writes it as a WebP ---
+    private void transcode(File original, File stored) throws IOException {
+        Bitmap bitmap = decoder.decodeAtMost(Uri.fromFile(original), MAX_SIZE);
+        if (bitmap == null) throw new IOException("Not a readable image");
+        bitmap = upright(bitmap, original);
+
+        File tmp = new File(dir, stored.getName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE)) {
+            if (!bitmap.compress(webp(), WEBP_QUALITY, out)) throw new IOException("WebP encoding failed");
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(stored)) {
+            tmp.delete();
+            throw new IOException("Could not store " + stored);
+        }
+    }
+
+    // The orientation goes into the pixels, since the WebP is written without EXIF
+    private static Bitmap upright(Bitmap bitmap, File original) {
+        Matrix matrix;
+        try {
+            matrix = uprightMatrix(new ExifInterface(original));
+        } catch (IOException e) {
+            return bitmap;  // no readable EXIF: stored as decoded
+        }
+        if (matrix == null) return bitmap;
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    /**
+     * The transform that shows the decoded pixels upright, or null if they
+     * already are. EXIF mirrors first and then rotates, so the flip has to
+     * come first here too: the other way round, orientations 5 and 7 end up
+     * upside down.
+     */
+    @Nullable
+    static Matrix uprightMatrix(ExifInterface exif) {
+        int degrees = exif.getRotationDegrees();
+        boolean flipped = exif.isFlipped();
+        if (degrees == 0 && !flipped) return null;
+        Matrix matrix = new Matrix();
+        if (flipped) {
+            matrix.setScale(-1, 1);
+            matrix.postRotate(degrees);
+        } else {
+            matrix.setRotate(degrees);
+        }
+        return matrix;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webp() {
+        // Before API 30 there is only WEBP, which is lossy below quality 100
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+}
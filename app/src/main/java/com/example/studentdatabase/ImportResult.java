@@ -0,0 +1,49 @@
+package com.example.studentdatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ImportResult {
+
+    public static class RowError {
+        private final int row;         // 1-based record number in the import source
+        private final String message;  // Why the row was rejected
+
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private int inserted;
+    private final List<RowError> errors = new ArrayList<>();
+
+    void addInserted() {
+        inserted++;
+    }
+
+    void addError(int row, String message) {
+        errors.add(new RowError(row, message));
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getFailed() {
+        return errors.size();
+    }
+
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+}
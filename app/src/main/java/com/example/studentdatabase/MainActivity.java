@@ -1,32 +1,72 @@
 package com.example.studentdatabase;
 
+import android.content.ContentUris;
 import android.content.Intent;
+import android.database.ContentObserver;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.widget.SearchView;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.FragmentActivity;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.chip.Chip;
+import com.google.android.material.chip.ChipGroup;
+import com.google.android.material.snackbar.Snackbar;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class MainActivity extends AppCompatActivity {
 
     RecyclerView recyclerView;
     StudentAdapter adapter;
-    List<Student> studentList;
-    DBHelper dbHelper;
+    StudentRepository repository;
     SearchView searchView;
+    ChipGroup courseChips;
+    @Nullable String selectedCourse;  // null: every course
+    SearchPipeline searchPipeline;
+    // Deleted since the undo bar appeared; restored together on undo
+    private final List<Integer> pendingUndo = new ArrayList<>();
+
+    // --- Backup: the export format picked before the file chooser opened ---
+    private StudentBackup.Format exportFormat = StudentBackup.Format.CSV;
+    private boolean exportGzip = false;
+    @Nullable private CancellationSignal backupSignal;  // export or restore in progress
+    @Nullable private Snackbar backupBar;
+    @Nullable private Snackbar undoBar;  // the bar whose dismissal purges pendingUndo
+
+    private final ActivityResultLauncher<String> exportCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(StudentBackup.Format.CSV.mimeType), this::exportTo);
+    private final ActivityResultLauncher<String> exportJsonLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(StudentBackup.Format.JSON.mimeType), this::exportTo);
+    private final ActivityResultLauncher<String> exportGzipLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/gzip"), this::exportTo);
+    private final ActivityResultLauncher<String[]> restoreLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::restoreFrom);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -40,60 +80,92 @@ public class MainActivity extends AppCompatActivity {
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
         searchView = findViewById(R.id.searchView);
-        // Initialize DB
-        dbHelper = new DBHelper(this);
-        studentList = dbHelper.getAllStudents();  // load all from DB
+        courseChips = findViewById(R.id.courseChips);
+        // Initialize DB (opened lazily on the repository's worker threads)
+        repository = StudentRepository.getInstance(this);
 
-        // Set up adapter
-        adapter = new StudentAdapter(this, studentList);
+        // Set up adapter: the first frame draws the startup snapshot (a small file,
+        // no DB); rows are then paged in from the DB as they scroll into view
+        adapter = new StudentAdapter(this, repository, repository.readStartupSnapshot());
         recyclerView.setAdapter(adapter);
 
 
+        // Debounced, off-thread search; only the latest result reaches the adapter
+        searchPipeline = new SearchPipeline(repository, (query, results) -> adapter.showResults(query, results));
+        adapter.setOnDataChangedListener(searchPipeline::forgetResults);
+        adapter.setOnStudentDeletedListener(this::offerUndo);
+
+        // Facet counts are patched by the DB on every write; re-read them when one lands
+        repository.addObserver(facetObserver);
+        // Writes by other apps arrive through the provider, already coalesced per transaction
+        getContentResolver().registerContentObserver(StudentContract.CONTENT_URI, true, providerObserver);
+        // Posted runnables run after the first traversal, so the DB opens once the first frame is drawn
+        recyclerView.post(this::openData);
+
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                adapter.filterList(query);
+                searchPipeline.submitNow(query);
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                adapter.filterList(newText);
+                searchPipeline.submit(newText);
                 return true;
             }
         });
         // Swipe and move handler
-        ItemTouchHelper itemTouchHelper = new ItemTouchHelper(callback(studentList, adapter));
+        ItemTouchHelper itemTouchHelper = new ItemTouchHelper(callback(adapter));
         itemTouchHelper.attachToRecyclerView(recyclerView);
     }
 
-    static ItemTouchHelper.SimpleCallback callback(List<Student> persons, StudentAdapter adapter) {
+    // --- After the first frame: open the DB and replace the snapshot with live rows ---
+    private void openData() {
+        if (isFinishing()) return;
+        adapter.start();
+        refreshFacets();
+        // Tombstones whose undo window ended with the last process
+        repository.purgeDeleted();
+        // Also covers a first run, or a process that died before its last save
+        repository.saveStartupSnapshot();
+    }
+
+    static ItemTouchHelper.SimpleCallback callback(StudentAdapter adapter) {
         return new ItemTouchHelper.SimpleCallback(
                 ItemTouchHelper.UP | ItemTouchHelper.DOWN,
                 ItemTouchHelper.LEFT
         ) {
+            @Override
+            public int getDragDirs(@NonNull RecyclerView recyclerView,
+                                   @NonNull RecyclerView.ViewHolder viewHolder) {
+                return adapter.canReorder() ? super.getDragDirs(recyclerView, viewHolder) : 0;
+            }
+
             @Override
             public boolean onMove(@NonNull RecyclerView recyclerView,
                                   @NonNull RecyclerView.ViewHolder viewHolder,
                                   @NonNull RecyclerView.ViewHolder target) {
                 int from = viewHolder.getAdapterPosition();
                 int to = target.getAdapterPosition();
-                Collections.swap(persons, from, to);
-                adapter.notifyItemMoved(from, to);
+                adapter.moveItem(from, to);
                 return true;
             }
 
+            @Override
+            public void clearView(@NonNull RecyclerView recyclerView,
+                                  @NonNull RecyclerView.ViewHolder viewHolder) {
+                super.clearView(recyclerView, viewHolder);
+                // Drag finished: write the new order in one transaction
+                adapter.commitMoves();
+            }
+
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
                 int position = viewHolder.getAdapterPosition();
-                Student s = persons.get(position);
 
                 // Delete from DB
-                DBHelper db = new DBHelper(viewHolder.itemView.getContext());
-                db.deleteStudent(s.getId());
-
-                persons.remove(position);
-                adapter.notifyItemRemoved(position);
+                adapter.deleteStudentAt(position);
             }
         };
     }
@@ -101,6 +173,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.option_menu, menu);
+        menu.findItem(R.id.metrics).setVisible(Metrics.ENABLED);
         return true;
     }
 
@@ -111,6 +184,20 @@ public class MainActivity extends AppCompatActivity {
             startActivityForResult(intent, 0);
             return true;
         }
+        if (item.getItemId() == R.id.export) {
+            chooseExportFormat();
+            return true;
+        }
+        if (item.getItemId() == R.id.restore) {
+            if (backupSignal == null) {
+                restoreLauncher.launch(new String[]{"text/*", "application/json", "application/gzip"});
+            }
+            return true;
+        }
+        if (item.getItemId() == R.id.metrics) {
+            showMetrics();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
@@ -118,13 +205,239 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (resultCode == RESULT_OK) {
-            refreshStudentList();
+        // The repository already patched the changed row into the list; only
+        // search results need re-running, since the edit may change what matches
+        if (resultCode == RESULT_OK && !searchView.getQuery().toString().trim().isEmpty()) {
+            searchPipeline.invalidate();
+        }
+    }
+    // --- Deletes stay undoable while the bar is up; consecutive deletes share one bar ---
+    private void offerUndo(Student student) {
+        pendingUndo.add(student.getId());
+        String text = pendingUndo.size() == 1
+                ? "Deleted " + student.getName()
+                : pendingUndo.size() + " students deleted";
+        undoBar = Snackbar.make(recyclerView, text, Snackbar.LENGTH_LONG)
+                .setAction("Undo", v -> {
+                    List<Integer> ids = new ArrayList<>(pendingUndo);
+                    pendingUndo.clear();
+                    repository.restoreStudents(ids, ok -> {
+                        refreshStudentList();
+                        refreshFacets();
+                    });
+                })
+                .addCallback(new Snackbar.Callback() {
+                    @Override
+                    public void onDismissed(Snackbar bar, int event) {
+                        // Undone, or a newer undo bar took over these deletes. Any other
+                        // bar pushing this one away closes the undo window.
+                        if (event == DISMISS_EVENT_ACTION || bar != undoBar) return;
+                        undoBar = null;
+                        repository.purgeStudents(pendingUndo);
+                        pendingUndo.clear();
+                    }
+                });
+        undoBar.show();
+    }
+
+    // --- Course chips: "All" plus one per course, each with its live count ---
+    private final StudentRepository.Observer facetObserver = new StudentRepository.Observer() {
+        @Override
+        public void onStudentInserted(Student student) {
+            refreshFacets();
+        }
+
+        @Override
+        public void onStudentUpdated(Student student) {
+            refreshFacets();
+        }
+
+        @Override
+        public void onStudentDeleted(int id) {
+            refreshFacets();
         }
+    };
+
+    // --- Provider changes: one row URI per updated row, or the table URI for anything bigger ---
+    private final ContentObserver providerObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+        @Override
+        public void onChange(boolean selfChange, @Nullable Uri uri) {
+            refreshFacets();
+            boolean searching = !searchView.getQuery().toString().trim().isEmpty();
+            if (uri == null || StudentContract.CONTENT_URI.equals(uri) || searching) {
+                // Reloads the loaded pages and the count; only rows that differ are rebound
+                refreshStudentList();
+            } else {
+                adapter.reloadStudent((int) ContentUris.parseId(uri));
+            }
+        }
+    };
+
+    private void refreshFacets() {
+        repository.getCourseCounts(this::showFacets);
     }
+
+    private void showFacets(Map<String, Integer> counts) {
+        if (isFinishing()) return;
+        if (selectedCourse != null && !counts.containsKey(selectedCourse)) {
+            // The last student of the filtered course is gone
+            selectCourse(null);
+        }
+
+        int total = 0;
+        for (int count : counts.values()) total += count;
+        courseChips.removeAllViews();
+        addFacetChip("All (" + total + ")", null);
+        for (Map.Entry<String, Integer> facet : counts.entrySet()) {
+            addFacetChip(facet.getKey() + " (" + facet.getValue() + ")", facet.getKey());
+        }
+    }
+
+    private void addFacetChip(String label, @Nullable String course) {
+        Chip chip = new Chip(this);
+        chip.setText(label);
+        chip.setCheckable(true);
+        chip.setChecked(Objects.equals(course, selectedCourse));
+        chip.setOnClickListener(v -> selectCourse(course));
+        courseChips.addView(chip);
+    }
+
+    private void selectCourse(@Nullable String course) {
+        if (Objects.equals(course, selectedCourse)) return;
+        selectedCourse = course;
+        adapter.setCourseFilter(course);
+    }
+
     private void refreshStudentList() {
-        List<Student> newList = dbHelper.getAllStudents();
-        adapter.updateData(newList);
+        if (searchView.getQuery().toString().trim().isEmpty()) {
+            adapter.refresh();
+        } else {
+            searchPipeline.invalidate();
+        }
+    }
+
+    // --- Export: pick a format, then a file; rows stream straight from the DB ---
+    private void chooseExportFormat() {
+        if (backupSignal != null) return;
+        String[] labels = {"CSV", "CSV (gzip)", "JSON", "JSON (gzip)"};
+        new AlertDialog.Builder(this)
+                .setTitle("Export students")
+                .setItems(labels, (dialog, which) -> {
+                    exportFormat = which < 2 ? StudentBackup.Format.CSV : StudentBackup.Format.JSON;
+                    exportGzip = which % 2 == 1;
+                    String name = "students" + exportFormat.extension + (exportGzip ? ".gz" : "");
+                    if (exportGzip) {
+                        exportGzipLauncher.launch(name);
+                    } else if (exportFormat == StudentBackup.Format.JSON) {
+                        exportJsonLauncher.launch(name);
+                    } else {
+                        exportCsvLauncher.launch(name);
+                    }
+                })
+                .show();
+    }
+
+    private void exportTo(@Nullable Uri uri) {
+        if (uri == null) return;
+        OutputStream out = openBackupStream(() -> getContentResolver().openOutputStream(uri, "wt"));
+        if (out == null) return;
+
+        CancellationSignal signal = startBackup("Exporting");
+        repository.exportStudents(out, exportFormat, exportGzip, rows -> showBackupProgress("Exporting", rows),
+                signal, rows -> {
+                    finishBackup();
+                    if (rows != null) {
+                        Toast.makeText(this, "Exported " + rows + " students", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    // Don't leave a truncated file behind
+                    try {
+                        DocumentsContract.deleteDocument(getContentResolver(), uri);
+                    } catch (FileNotFoundException | RuntimeException e) {
+                        Log.w("MainActivity", "Could not delete partial export", e);
+                    }
+                    Toast.makeText(this, signal.isCanceled() ? "Export cancelled" : "Export failed",
+                            Toast.LENGTH_SHORT).show();
+                });
+    }
+
+    private void restoreFrom(@Nullable Uri uri) {
+        if (uri == null) return;
+        InputStream in = openBackupStream(() -> getContentResolver().openInputStream(uri));
+        if (in == null) return;
+
+        CancellationSignal signal = startBackup("Restoring");
+        repository.restoreBackup(in, rows -> showBackupProgress("Restoring", rows), signal, result -> {
+            finishBackup();
+            if (result == null) {
+                Toast.makeText(this, signal.isCanceled() ? "Restore cancelled" : "Restore failed",
+                        Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String text = "Restored " + result.getInserted() + " students";
+            if (result.getFailed() > 0) text += ", skipped " + result.getFailed();
+            Toast.makeText(this, text, Toast.LENGTH_LONG).show();
+            refreshStudentList();
+            refreshFacets();
+        });
+    }
+
+    private interface StreamOpener<T> {
+        @Nullable
+        T open() throws FileNotFoundException;
+    }
+
+    @Nullable
+    private <T> T openBackupStream(StreamOpener<T> opener) {
+        try {
+            T stream = opener.open();
+            if (stream != null) return stream;
+        } catch (FileNotFoundException | SecurityException e) {
+            Log.w("MainActivity", "Could not open backup file", e);
+        }
+        Toast.makeText(this, "Could not open the file", Toast.LENGTH_SHORT).show();
+        return null;
+    }
+
+    // --- Progress bar with Cancel while an export or restore runs ---
+    private CancellationSignal startBackup(String verb) {
+        CancellationSignal signal = new CancellationSignal();
+        backupSignal = signal;
+        backupBar = Snackbar.make(recyclerView, verb + "…", Snackbar.LENGTH_INDEFINITE)
+                .setAction("Cancel", v -> signal.cancel());
+        backupBar.show();
+        return signal;
+    }
+
+    private void showBackupProgress(String verb, int rows) {
+        if (backupBar != null) backupBar.setText(verb + "… " + rows + " students");
+    }
+
+    private void finishBackup() {
+        backupSignal = null;
+        if (backupBar != null) backupBar.dismiss();
+        backupBar = null;
+    }
+
+    // --- Debug builds: latency percentiles, also dumped to logcat ---
+    private void showMetrics() {
+        String report = Metrics.report();
+        Log.i("Metrics", report);
+        new AlertDialog.Builder(this)
+                .setTitle("Metrics")
+                .setMessage(report)
+                .setPositiveButton("OK", null)
+                .setNeutralButton("Reset", (dialog, which) -> Metrics.reset())
+                .show();
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (backupSignal != null) backupSignal.cancel();
+        repository.removeObserver(facetObserver);
+        getContentResolver().unregisterContentObserver(providerObserver);
+        searchPipeline.cancel();
+        super.onDestroy();
     }
 
 
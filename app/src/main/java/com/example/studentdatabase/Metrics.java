@@ -0,0 +1,133 @@
+package com.example.studentdatabase;
+
+import android.os.Trace;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Debug-only latency histograms and counters for the operations behind jank:
+ * SQLite reads and writes, row binding, image decoding and list filtering.
+ * Each timed operation is also a trace section, so it shows up in system
+ * traces next to the frames it delayed.
+ * <p>
+ * Time an operation with
+ * <pre>
+ * long start = Metrics.begin(Metrics.DB_PAGE);
+ * try { ... } finally { Metrics.end(Metrics.DB_PAGE, start); }
+ * </pre>
+ * Recording allocates nothing. In release builds {@link #ENABLED} is a
+ * false constant, both calls return at once and no histograms are created.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = BuildConfig.DEBUG;
+
+    // --- Timed operations ---
+    static final int DB_INSERT = 0;
+    static final int DB_BULK_INSERT = 1;
+    static final int DB_READ_ALL = 2;
+    static final int DB_COUNT = 3;
+    static final int DB_PAGE = 4;
+    static final int DB_SEEK = 5;
+    static final int DB_FACETS = 6;
+    static final int DB_MOVE = 7;
+    static final int DB_SEARCH = 8;
+    static final int DB_SEARCH_COUNT = 9;
+    static final int DB_SEARCH_SEEK = 10;
+    static final int DB_FIND = 11;
+    static final int DB_UPDATE = 12;
+    static final int DB_DELETE = 13;
+    static final int DB_RESTORE = 14;
+    static final int DB_PURGE = 15;
+    static final int DB_DELETED_IDS = 16;
+    static final int BIND = 17;
+    static final int DECODE = 18;
+    static final int FILTER = 19;
+    static final int DB_FUZZY = 20;
+    static final int DB_SYNC_PENDING = 21;
+    static final int DB_SYNC_APPLY = 22;
+    static final int INGEST = 23;
+
+    // Also the trace section names, so keep them short and constant
+    private static final String[] OPERATIONS = {
+            "db.insert", "db.bulkInsert", "db.readAll", "db.count", "db.page", "db.seek",
+            "db.facets", "db.move", "db.search", "db.searchCount", "db.searchSeek", "db.find",
+            "db.update", "db.delete", "db.restore", "db.purge", "db.deletedIds",
+            "ui.bind", "image.decode", "ui.filter", "db.fuzzy", "db.syncPending", "db.syncApply",
+            "image.ingest"
+    };
+
+    // --- Counters ---
+    static final int DECODED_BYTES = 0;
+    static final int DB_ROWS_READ = 1;
+
+    private static final String[] COUNTERS = {"image.decodedBytes", "db.rowsRead"};
+
+    private static final LatencyHistogram[] histograms = ENABLED ? newHistograms() : null;
+    private static final AtomicLongArray counters = ENABLED ? new AtomicLongArray(COUNTERS.length) : null;
+
+    private Metrics() {
+    }
+
+    /**
+     * Opens a trace section and returns the start time to pass to {@link #end}.
+     */
+    static long begin(int operation) {
+        if (!ENABLED) return 0;
+        Trace.beginSection(OPERATIONS[operation]);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time since {@code start} and closes the trace section.
+     * Call on the thread that called {@link #begin}.
+     */
+    static void end(int operation, long start) {
+        if (!ENABLED) return;
+        histograms[operation].record(System.nanoTime() - start);
+        Trace.endSection();
+    }
+
+    static void add(int counter, long amount) {
+        if (!ENABLED) return;
+        counters.addAndGet(counter, amount);
+    }
+
+    public static void reset() {
+        if (!ENABLED) return;
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+        for (int i = 0; i < COUNTERS.length; i++) counters.set(i, 0);
+    }
+
+    /**
+     * One line per operation that has run: count and p50/p95/p99/max in
+     * milliseconds, followed by the counters.
+     */
+    public static String report() {
+        if (!ENABLED) return "Metrics are disabled in this build";
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            LatencyHistogram.Snapshot snapshot = histograms[i].snapshot();
+            if (snapshot.count() == 0) continue;
+            report.append(String.format(Locale.ROOT, "%-15s n=%-6d p50=%s p95=%s p99=%s max=%s%n",
+                    OPERATIONS[i], snapshot.count(),
+                    millis(snapshot.percentile(50)), millis(snapshot.percentile(95)),
+                    millis(snapshot.percentile(99)), millis(snapshot.max())));
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            report.append(COUNTERS[i]).append(" = ").append(counters.get(i)).append('\n');
+        }
+        return report.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] all = new LatencyHistogram[OPERATIONS.length];
+        for (int i = 0; i < all.length; i++) all[i] = new LatencyHistogram();
+        return all;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.studentdatabase;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Position-by-position comparison of a reloaded page against the rows it
+ * replaces. Only changed positions are reported, and neighbouring changes
+ * with the same payload are reported as one run. Plain Java, so the
+ * benchmark module can measure it.
+ */
+final class RowChanges {
+
+    // Same row, same photo: only the labels need rebinding
+    static final Object PAYLOAD_TEXT = "text";
+
+    interface Sink {
+        void onChanged(int start, int count, @Nullable Object payload);
+    }
+
+    private RowChanges() {}
+
+    static void dispatch(int start, int visible, List<Student> old, List<Student> rows, Sink sink) {
+        int runStart = -1;
+        Object runPayload = null;
+        for (int i = 0; i <= visible; i++) {
+            boolean changed = false;
+            Object payload = null;
+            if (i < visible) {
+                Student before = i < old.size() ? old.get(i) : null;
+                Student after = i < rows.size() ? rows.get(i) : null;
+                changed = !Objects.equals(before, after);
+                payload = payloadFor(before, after);
+            }
+            if (runStart >= 0 && (!changed || payload != runPayload)) {
+                sink.onChanged(start + runStart, i - runStart, runPayload);
+                runStart = -1;
+            }
+            if (changed && runStart < 0) {
+                runStart = i;
+                runPayload = payload;
+            }
+        }
+    }
+
+    @Nullable
+    static Object payloadFor(@Nullable Student oldItem, @Nullable Student newItem) {
+        if (oldItem == null || newItem == null || oldItem.getId() != newItem.getId()) return null;
+        return Objects.equals(oldItem.getImage(), newItem.getImage()) ? PAYLOAD_TEXT : null;
+    }
+}
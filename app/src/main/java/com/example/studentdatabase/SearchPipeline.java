@@ -0,0 +1,161 @@
+package com.example.studentdatabase;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the search box off the main thread. Keystrokes are debounced, a newer
+ * query cancels the one in flight, and a query that extends the previous one
+ * ("jo" -> "joh") narrows the previous results in memory instead of going
+ * back to the database. A query that matches nothing falls back to
+ * typo-tolerant matches from {@link TrigramIndex}. Only the latest query's
+ * result reaches the listener.
+ */
+public class SearchPipeline {
+
+    static final long DEBOUNCE_MS = 150;
+    // Result sets up to this size are kept in memory (columnar) and narrowed; bigger ones are paged from SQLite
+    static final int MAX_IN_MEMORY = 2000;
+    // Typo-tolerant matches shown when nothing matches as typed
+    static final int FUZZY_LIMIT = 50;
+
+    public interface Listener {
+        /**
+         * Called on the main thread. {@code results} is null when the query
+         * matched too many rows to hold; page them from the database instead.
+         */
+        void onResults(String query, @Nullable List<Student> results);
+    }
+
+    private final StudentRepository repository;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Written on the main thread; read by workers to notice they went stale
+    private volatile int generation = 0;
+
+    // Main thread only
+    private String pendingQuery = "";
+    @Nullable private Future<?> inFlight;
+    @Nullable private CancellationSignal inFlightSignal;
+
+    // Last complete result set, replaced on the main thread when a search publishes
+    private String lastTokensKey = null;
+    @Nullable private StudentColumns lastResults;
+
+    private final Runnable runPending = () -> start(pendingQuery);
+
+    public SearchPipeline(StudentRepository repository, Listener listener) {
+        this.repository = repository;
+        this.listener = listener;
+    }
+
+    // --- Keystroke: wait for typing to pause ---
+    public void submit(String query) {
+        pendingQuery = query == null ? "" : query;
+        mainHandler.removeCallbacks(runPending);
+        mainHandler.postDelayed(runPending, DEBOUNCE_MS);
+    }
+
+    // --- Search button: run right away ---
+    public void submitNow(String query) {
+        pendingQuery = query == null ? "" : query;
+        mainHandler.removeCallbacks(runPending);
+        start(pendingQuery);
+    }
+
+    /**
+     * Forgets cached results after the table changed and re-runs the current query.
+     */
+    public void invalidate() {
+        lastTokensKey = null;
+        lastResults = null;
+        mainHandler.removeCallbacks(runPending);
+        start(pendingQuery);
+    }
+
+    /**
+     * Drops cached results without searching again, e.g. after the adapter
+     * already removed a deleted row from what it shows.
+     */
+    public void forgetResults() {
+        lastTokensKey = null;
+        lastResults = null;
+    }
+
+    public void cancel() {
+        mainHandler.removeCallbacks(runPending);
+        generation++;
+        cancelInFlight();
+    }
+
+    private void start(String query) {
+        int gen = ++generation;
+        cancelInFlight();
+
+        String[] tokens = SearchText.tokens(query);
+        if (tokens.length == 0) {
+            lastTokensKey = null;
+            lastResults = null;
+            listener.onResults(query, null);
+            return;
+        }
+
+        String tokensKey = String.join("", tokens);
+        StudentColumns previous = lastResults;
+        boolean narrow = previous != null && lastTokensKey != null && tokensKey.startsWith(lastTokensKey);
+
+        CancellationSignal signal = new CancellationSignal();
+        inFlightSignal = signal;
+        inFlight = repository.read(() -> {
+            StudentColumns results;
+            boolean fuzzy = false;
+            try {
+                results = narrow ? previous.narrow(tokens, () -> gen != generation) : queryDatabase(query, signal);
+                if (results != null && results.isEmpty() && gen == generation) {
+                    // Nothing matches as typed; offer the closest spellings instead
+                    results = repository.fuzzySearch(query, FUZZY_LIMIT);
+                    fuzzy = true;
+                }
+            } catch (OperationCanceledException e) {
+                return null;
+            }
+            if (results != null || !narrow) {
+                StudentColumns published = results;
+                // Near misses for "jonh" say nothing about "jonhs"; search again rather than narrow
+                String publishedKey = fuzzy ? null : tokensKey;
+                mainHandler.post(() -> publish(gen, query, publishedKey, published));
+            }
+            return null;
+        }, null);
+    }
+
+    @Nullable
+    private StudentColumns queryDatabase(String query, CancellationSignal signal) {
+        StudentColumns rows = repository.getDbHelper().searchColumns(query, MAX_IN_MEMORY + 1, signal);
+        return rows.size() > MAX_IN_MEMORY ? null : rows;
+    }
+
+    private void publish(int gen, String query, @Nullable String tokensKey, @Nullable StudentColumns results) {
+        if (gen != generation) return;
+        inFlight = null;
+        inFlightSignal = null;
+        lastTokensKey = results == null ? null : tokensKey;
+        lastResults = results;
+        listener.onResults(query, lastResults);
+    }
+
+    private void cancelInFlight() {
+        if (inFlightSignal != null) inFlightSignal.cancel();
+        if (inFlight != null) inFlight.cancel(false);
+        inFlight = null;
+        inFlightSignal = null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.studentdatabase;
+
+import androidx.annotation.Nullable;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Search normalization shared by the in-memory matcher. Text is lowercased,
+ * accent-folded and split into words, mirroring how the FTS index tokenizes
+ * name and course, so narrowing a result set in memory keeps the same
+ * "every word is a prefix of some word" semantics as the SQL search.
+ */
+public final class SearchText {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchText() {}
+
+    /**
+     * Lowercased, accent-folded words joined by single spaces, with a leading
+     * space so a word prefix can be found with indexOf(" " + token).
+     */
+    public static String normalize(@Nullable String text) {
+        if (text == null || text.isEmpty()) return "";
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        String words = SEPARATORS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        return words.isEmpty() ? "" : " " + words;
+    }
+
+    /**
+     * The normalized query as word prefixes, each with its leading space.
+     */
+    public static String[] tokens(@Nullable String query) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) return new String[0];
+        String[] words = normalized.substring(1).split(" ");
+        for (int i = 0; i < words.length; i++) {
+            words[i] = " " + words[i];
+        }
+        return words;
+    }
+
+    public static boolean matches(String key, String[] tokens) {
+        for (String token : tokens) {
+            if (!key.contains(token)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The first screenful of the student list, saved to a small binary file so
+ * the next cold start can draw it before the database is even opened. Rows
+ * keep their ids, sort keys and image URIs, so thumbnails come straight from
+ * {@link ThumbnailCache} and the rows can be edited like loaded ones.
+ * <p>
+ * The file is a few kilobytes whatever the table size. It is replaced
+ * atomically, so a reader sees the old snapshot or the new one; anything
+ * unreadable is treated as no snapshot.
+ */
+final class StartupSnapshot {
+
+    private static final String TAG = "StartupSnapshot";
+    private static final String FILE = "startup_snapshot.bin";
+    private static final int MAGIC = 0x53545553;  // "STUS"
+    private static final int VERSION = 1;
+
+    static final int ROWS = 20;  // more than a phone shows before scrolling
+
+    final List<Student> rows;
+    final int count;  // every live student, so the scrollbar is right from the start
+
+    private StartupSnapshot(List<Student> rows, int count) {
+        this.rows = rows;
+        this.count = count;
+    }
+
+    static File fileIn(@NonNull Context context) {
+        return new File(context.getFilesDir(), FILE);
+    }
+
+    /**
+     * The saved snapshot, or null if there is none yet or it can't be read.
+     * Cheap enough for the main thread.
+     */
+    @Nullable
+    static StartupSnapshot read(File file) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            int count = in.readInt();
+            int size = in.readInt();
+            if (size < 0 || size > ROWS || count < size) return null;
+            List<Student> rows = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Student student = new Student(in.readInt(), readString(in), readString(in), readString(in));
+                student.setSortKey(in.readLong());
+                rows.add(student);
+            }
+            return new StartupSnapshot(Collections.unmodifiableList(rows), count);
+        } catch (IOException e) {
+            Log.w(TAG, "Ignoring unreadable snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves up to {@link #ROWS} rows and the total count in place of the
+     * previous snapshot.
+     */
+    static synchronized void write(File file, List<Student> rows, int count) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        int size = Math.min(ROWS, rows.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(Math.max(count, size));
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                Student student = rows.get(i);
+                out.writeInt(student.getId());
+                writeString(out, student.getName());
+                writeString(out, student.getCourse());
+                writeString(out, student.getImage());
+                out.writeLong(student.getSortKey());
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    // --- Nullable strings: a presence flag, then modified UTF-8 ---
+    private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    @Nullable
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,10 +1,14 @@
 package com.example.studentdatabase;
 
+import java.util.Objects;
+
 public class Student {
     private int id;          // Database primary key
     private String name;     // Student name
     private String course;   // Course name (e.g., BSCS, BSIT, etc.)
     private String image;    // Path or URI to the student's image
+    private long sortKey;     // Position in the user's custom order
+    private String searchKey; // Normalized name + course, built on first search
 
     // ---- Constructors ----
     public Student() {
@@ -40,6 +44,7 @@ public class Student {
 
     public void setName(String name) {
         this.name = name;
+        this.searchKey = null;
     }
 
     public String getCourse() {
@@ -48,6 +53,7 @@ public class Student {
 
     public void setCourse(String course) {
         this.course = course;
+        this.searchKey = null;
     }
 
     public String getImage() {
@@ -57,4 +63,37 @@ public class Student {
     public void setImage(String image) {
         this.image = image;
     }
+
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    public void setSortKey(long sortKey) {
+        this.sortKey = sortKey;
+    }
+
+    // ---- Search ----
+    public String getSearchKey() {
+        if (searchKey == null) {
+            searchKey = SearchText.normalize(name) + SearchText.normalize(course);
+        }
+        return searchKey;
+    }
+
+    // ---- Content equality (used to skip rebinding unchanged rows) ----
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Student)) return false;
+        Student other = (Student) o;
+        return id == other.id
+                && Objects.equals(name, other.name)
+                && Objects.equals(course, other.course)
+                && Objects.equals(image, other.image);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, course, image);
+    }
 }
@@ -2,9 +2,6 @@ package com.example.studentdatabase;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -13,26 +10,86 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
-public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentHolder> {
+public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentHolder>
+        implements StudentPager.Listener, StudentRepository.Observer {
+
+    private static final int THUMB_DP = 100;
+    private static final int PREFETCH_DISTANCE = 10;  // rows ahead of the scroll direction
 
     private final Context context;
-    private final List<Student> studentList;
-    private final List<Student> allStudents;
+    private final StudentRepository repository;
+    private final ImageLoader imageLoader;
+    private final int thumbSize;  // px, matches the 100dp image in item_layout
+    private StudentPager pager;
+    // Complete search results are diffed off the main thread; unused while rows come from the pager
+    private final AsyncListDiffer<Student> results;
+    private boolean showingResults = false;
+    private boolean browsing = true;  // pager in custom order, not search rank
+    @Nullable private String course;  // browse only this course
+    // Rows dragged since the gesture started; written together when it ends
+    private final Set<Integer> draggedIds = new LinkedHashSet<>();
+    @Nullable private Runnable onDataChanged;
+    @Nullable private OnStudentDeletedListener onStudentDeleted;
+    private int lastPrefetchStart = RecyclerView.NO_POSITION;
+
+    // --- Warms thumbnails for the rows about to scroll in ---
+    private final RecyclerView.OnScrollListener prefetcher = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (dy == 0 || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) return;
+            LinearLayoutManager layout = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int start;
+            int end;
+            if (dy > 0) {
+                start = layout.findLastVisibleItemPosition() + 1;
+                end = Math.min(getItemCount(), start + PREFETCH_DISTANCE);
+            } else {
+                end = layout.findFirstVisibleItemPosition();
+                start = Math.max(0, end - PREFETCH_DISTANCE);
+            }
+            if (start == lastPrefetchStart || start < 0) return;
+            lastPrefetchStart = start;
+            for (int i = start; i < end; i++) {
+                Student student = studentAt(i);
+                if (student != null) imageLoader.prefetch(student.getImage(), thumbSize);
+            }
+        }
+    };
 
-    public StudentAdapter(Context context, List<Student> studentList) {
+    /**
+     * Shows {@code snapshot} until {@link #start} is called; without one,
+     * rows load from the DB right away.
+     */
+    public StudentAdapter(Context context, StudentRepository repository, @Nullable StartupSnapshot snapshot) {
         this.context = context;
-        this.studentList = new ArrayList<>(studentList);
-        this.allStudents = new ArrayList<>(studentList);
+        this.repository = repository;
+        this.imageLoader = ImageLoader.getInstance(context);
+        this.thumbSize = Math.round(THUMB_DP * context.getResources().getDisplayMetrics().density);
+        this.results = new AsyncListDiffer<>(this, new StudentDiffCallback());
+        StudentPager.Source source = StudentPager.browse(repository.getDbHelper());
+        this.pager = snapshot == null
+                ? new StudentPager(repository, source, this)
+                : new StudentPager(repository, source, this, snapshot.rows, snapshot.count);
+        setHasStableIds(true);
+    }
+
+    // --- Replaces the startup snapshot with rows read from the DB ---
+    public void start() {
+        pager.start();
     }
 
     @NonNull
@@ -43,24 +100,48 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentH
         return new StudentHolder(view);
     }
 
+    @Override
+    public long getItemId(int position) {
+        Student student = studentAt(position);
+        // Placeholders get negative ids so they never collide with a real row
+        return student != null ? student.getId() : -(position + 1L);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull StudentHolder holder, int position, @NonNull List<Object> payloads) {
+        long start = Metrics.begin(Metrics.BIND);
+        try {
+            Student student = studentAt(position);
+            if (student != null && payloads.contains(StudentDiffCallback.PAYLOAD_TEXT)) {
+                // Same photo: refresh the labels only
+                holder.txtName.setText(student.getName());
+                holder.txtCourse.setText(student.getCourse());
+                return;
+            }
+            onBindViewHolder(holder, position);
+        } finally {
+            Metrics.end(Metrics.BIND, start);
+        }
+    }
+
     @Override
     public void onBindViewHolder(@NonNull StudentHolder holder, int position) {
-        Student student = studentList.get(position);
+        Student student = studentAt(position);
+        if (student == null) {
+            // Page still loading; rebound once it arrives
+            holder.txtName.setText("");
+            holder.txtCourse.setText("");
+            imageLoader.cancel(holder.imgStudent);
+            holder.imgStudent.setImageResource(R.drawable.baseline_person_24);
+            holder.menuButton.setOnClickListener(null);
+            return;
+        }
 
         holder.txtName.setText(student.getName());
         holder.txtCourse.setText(student.getCourse());
 
-        // --- Load & resize image ---
-        if (student.getImage() != null && !student.getImage().isEmpty()) {
-            try {
-                Uri uri = Uri.parse(student.getImage());
-                resizeAndSetImage(holder.imgStudent, uri);
-            } catch (Exception e) {
-                holder.imgStudent.setImageResource(R.drawable.baseline_person_24);
-            }
-        } else {
-            holder.imgStudent.setImageResource(R.drawable.baseline_person_24);
-        }
+        // --- Thumbnail, decoded off the main thread; the default image until then ---
+        imageLoader.load(holder.imgStudent, student.getImage(), thumbSize, R.drawable.baseline_person_24);
 
         // --- Popup menu (Edit/Delete) ---
         holder.menuButton.setOnClickListener(v -> {
@@ -70,7 +151,7 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentH
 
             popupMenu.setOnMenuItemClickListener(item -> {
                 int safePos = holder.getBindingAdapterPosition();
-                if (safePos == RecyclerView.NO_POSITION || safePos >= studentList.size())
+                if (safePos == RecyclerView.NO_POSITION || safePos >= getItemCount())
                     return false;
                 return handleMenuClick(item, safePos);
             });
@@ -79,34 +160,29 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentH
         });
     }
 
-    // --- Resize image before showing ---
-    private void resizeAndSetImage(ImageView imageView, Uri uri) {
-        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
-            Bitmap originalBitmap = BitmapFactory.decodeStream(inputStream);
-            if (originalBitmap != null) {
-                int maxSize = 500;
-                int width = originalBitmap.getWidth();
-                int height = originalBitmap.getHeight();
-                float ratio = (float) width / height;
+    @Override
+    public void onViewRecycled(@NonNull StudentHolder holder) {
+        // The row is off screen; its pending decode is no longer wanted
+        imageLoader.cancel(holder.imgStudent);
+    }
 
-                int finalWidth = ratio > 1 ? maxSize : (int) (maxSize * ratio);
-                int finalHeight = ratio > 1 ? (int) (maxSize / ratio) : maxSize;
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(prefetcher);
+        repository.addObserver(this);
+    }
 
-                Bitmap resizedBitmap = Bitmap.createScaledBitmap(originalBitmap, finalWidth, finalHeight, true);
-                imageView.setImageBitmap(resizedBitmap);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            imageView.setImageResource(R.drawable.baseline_person_24);
-            Toast.makeText(context, "Failed to load image", Toast.LENGTH_SHORT).show();
-        }
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(prefetcher);
+        repository.removeObserver(this);
     }
 
     // --- Handle edit/delete actions ---
     private boolean handleMenuClick(MenuItem item, int position) {
-        if (position < 0 || position >= studentList.size()) return false;
-        Student s = studentList.get(position);
-        DBHelper db = new DBHelper(context);
+        if (position < 0 || position >= getItemCount()) return false;
+        Student s = studentAt(position);
+        if (s == null) return false;
 
         if (item.getItemId() == R.id.edit) {
             if (context instanceof AppCompatActivity) {
@@ -122,11 +198,7 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentH
             return true;
 
         } else if (item.getItemId() == R.id.delete) {
-            db.deleteStudent(s.getId());
-            studentList.remove(position);
-            allStudents.remove(s);
-            notifyItemRemoved(position);
-            Toast.makeText(context, "Deleted " + s.getName(), Toast.LENGTH_SHORT).show();
+            deleteStudentAt(position);
             return true;
         }
 
@@ -135,33 +207,235 @@ public class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentH
 
     @Override
     public int getItemCount() {
-        return studentList.size();
+        return showingResults ? results.getCurrentList().size() : pager.size();
+    }
+
+    @Nullable
+    private Student studentAt(int position) {
+        if (showingResults) {
+            List<Student> list = results.getCurrentList();
+            return position >= 0 && position < list.size() ? list.get(position) : null;
+        }
+        return pager.get(position);
+    }
+
+    // --- Called after a delete from this adapter has committed ---
+    public void setOnDataChangedListener(@Nullable Runnable onDataChanged) {
+        this.onDataChanged = onDataChanged;
+    }
+
+    public interface OnStudentDeletedListener {
+        void onStudentDeleted(Student student);
+    }
+
+    // --- Called once a delete is stored, e.g. to offer undo ---
+    public void setOnStudentDeletedListener(@Nullable OnStudentDeletedListener listener) {
+        this.onStudentDeleted = listener;
+    }
+
+    // --- Delete row at position (menu and swipe); recoverable until purged ---
+    public void deleteStudentAt(int position) {
+        Student s = studentAt(position);
+        if (s == null) {
+            notifyItemChanged(position);
+            return;
+        }
+        if (showingResults) {
+            List<Student> updated = new ArrayList<>(results.getCurrentList());
+            updated.remove(position);
+            results.submitList(updated);
+        } else {
+            pager.removeLocally(position);
+            notifyItemRemoved(position);
+        }
+        StudentPager deletedFrom = pager;
+        repository.deleteStudent(s.getId(), ok -> {
+            deletedFrom.invalidate();
+            if (onDataChanged != null) onDataChanged.run();
+            if (ok && onStudentDeleted != null) onStudentDeleted.onStudentDeleted(s);
+        });
+    }
+
+    // --- Only the custom order can be rearranged; search results keep their rank ---
+    public boolean canReorder() {
+        // Within one course the neighbours' keys have other courses' rows between them
+        return browsing && course == null && !showingResults;
+    }
+
+    // --- Reorder while dragging; persisted by commitMoves() when the drag ends ---
+    public void moveItem(int from, int to) {
+        if (showingResults) {
+            List<Student> updated = new ArrayList<>(results.getCurrentList());
+            Collections.swap(updated, from, to);
+            results.submitList(updated);
+        } else {
+            Student dragged = pager.get(from);
+            pager.swap(from, to);
+            notifyItemMoved(from, to);
+            if (dragged != null && browsing) draggedIds.add(dragged.getId());
+        }
+    }
+
+    // --- Drag ended: give each dragged row a key between its new neighbours ---
+    public void commitMoves() {
+        if (draggedIds.isEmpty()) return;
+        List<StudentRepository.Move> moves = new ArrayList<>(draggedIds.size());
+        for (int id : draggedIds) {
+            int position = pager.positionOf(id);
+            if (position < 0) continue;
+            Student prev = position > 0 ? pager.get(position - 1) : null;
+            Student next = position < pager.size() - 1 ? pager.get(position + 1) : null;
+            if ((position > 0 && prev == null) || (position < pager.size() - 1 && next == null)) {
+                continue;  // neighbour not loaded; the reload below restores the stored order
+            }
+            moves.add(new StudentRepository.Move(id,
+                    prev != null ? prev.getId() : DBHelper.NO_NEIGHBOUR,
+                    next != null ? next.getId() : DBHelper.NO_NEIGHBOUR));
+        }
+        draggedIds.clear();
+
+        StudentPager movedIn = pager;
+        repository.moveStudents(moves, ok -> movedIn.invalidate());
     }
 
-    // --- Filter by name or course ---
+    // --- Search pipeline output: a complete result list, or null to page from SQLite ---
+    public void showResults(String query, @Nullable List<Student> found) {
+        if (found == null) {
+            filterList(query);
+            return;
+        }
+        if (!showingResults) {
+            // Switching from the pager: clear its rows, then let the differ insert the results
+            int oldCount = pager.size();
+            pager.release();
+            showingResults = true;
+            if (oldCount > 0) notifyItemRangeRemoved(0, oldCount);
+        }
+        results.submitList(found);
+    }
+
+    // --- Filter by name or course (full-text index, ranked and paged) ---
     public void filterList(String query) {
-        studentList.clear();
-        if (query == null || query.trim().isEmpty()) {
-            studentList.addAll(allStudents);
+        long start = Metrics.begin(Metrics.FILTER);
+        try {
+            DBHelper dbHelper = repository.getDbHelper();
+            browsing = query == null || query.trim().isEmpty();
+            StudentPager.Source source;
+            if (!browsing) {
+                source = StudentPager.search(dbHelper, query);
+            } else if (course != null) {
+                source = StudentPager.course(dbHelper, course);
+            } else {
+                source = StudentPager.browse(dbHelper);
+            }
+            draggedIds.clear();
+            int oldCount = pager.size();
+            if (showingResults) {
+                // Removes the in-memory rows synchronously; the released pager shows nothing
+                results.submitList(null);
+                showingResults = false;
+                oldCount = 0;
+            }
+            pager.release();
+            pager = new StudentPager(repository, source, this);
+            if (oldCount > 0) notifyItemRangeRemoved(0, oldCount);
+        } finally {
+            Metrics.end(Metrics.FILTER, start);
+        }
+    }
+
+    // --- Course facet: applies while browsing; a search covers every course ---
+    public void setCourseFilter(@Nullable String course) {
+        this.course = course;
+        if (browsing && !showingResults) filterList(null);
+    }
+
+    @Override
+    public void onCountChanged(int oldCount, int newCount) {
+        if (newCount > oldCount) {
+            notifyItemRangeInserted(oldCount, newCount - oldCount);
         } else {
-            query = query.toLowerCase().trim();
-            for (Student s : allStudents) {
-                if ((s.getName() != null && s.getName().toLowerCase().contains(query)) ||
-                        (s.getCourse() != null && s.getCourse().toLowerCase().contains(query))) {
-                    studentList.add(s);
+            notifyItemRangeRemoved(newCount, oldCount - newCount);
+        }
+    }
+
+    @Override
+    public void onRowsChanged(int start, int count, @Nullable Object payload) {
+        notifyItemRangeChanged(start, count, payload);
+    }
+
+    // --- Repository events: patch the one row that changed ---
+    @Override
+    public void onStudentInserted(Student student) {
+        // New students go to the end of the custom order; search results are re-run by the caller
+        if (showingResults || !browsing) return;
+        if (course != null && !course.equals(student.getCourse())) return;
+        pager.appendLocally(student);
+        notifyItemInserted(pager.size() - 1);
+    }
+
+    @Override
+    public void onStudentRestored(Student student) {
+        // Back at its old position, which may not be loaded: read the pages again
+        if (showingResults || !browsing) return;
+        if (course != null && !course.equals(student.getCourse())) return;
+        pager.invalidate();
+    }
+
+    @Override
+    public void onStudentUpdated(Student student) {
+        if (showingResults) {
+            List<Student> current = results.getCurrentList();
+            for (int i = 0; i < current.size(); i++) {
+                if (current.get(i).getId() == student.getId()) {
+                    List<Student> updated = new ArrayList<>(current);
+                    updated.set(i, student);
+                    results.submitList(updated);
+                    return;
                 }
             }
+            return;
         }
-        notifyDataSetChanged();
+        int position = pager.positionOf(student.getId());
+        if (browsing && course != null && course.equals(student.getCourse()) != position >= 0) {
+            // May have moved into or out of the filtered course
+            pager.invalidate();
+            return;
+        }
+        if (position < 0) return;  // not loaded; read fresh when scrolled to
+        Student before = pager.get(position);
+        pager.replace(student);
+        if (!student.equals(before)) {
+            notifyItemChanged(position, StudentDiffCallback.payloadFor(before, student));
+        }
+    }
+
+    @Override
+    public void onStudentDeleted(int id) {
+        // Deletes made here already removed their row; this catches the rest
+        int position = showingResults ? -1 : pager.positionOf(id);
+        if (position >= 0) {
+            pager.removeLocally(position);
+            notifyItemRemoved(position);
+            pager.invalidate();
+        }
+    }
+
+    // --- Re-read one row changed outside the app; rows not loaded are read fresh when scrolled to ---
+    public void reloadStudent(int id) {
+        if (showingResults || pager.positionOf(id) < 0) return;
+        repository.getStudentById(id, student -> {
+            if (student != null) {
+                onStudentUpdated(student);
+            } else {
+                onStudentDeleted(id);
+            }
+        });
     }
 
-    // --- Refresh data when returning from edit ---
-    public void updateData(List<Student> newList) {
-        studentList.clear();
-        studentList.addAll(newList);
-        allStudents.clear();
-        allStudents.addAll(newList);
-        notifyDataSetChanged();
+    // --- Reload loaded rows, e.g. after undo (only changed rows are rebound) ---
+    public void refresh() {
+        pager.invalidate();
     }
 
     // --- ViewHolder ---
@@ -0,0 +1,310 @@
+package com.example.studentdatabase;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the students table out to CSV or JSON, optionally gzipped, and
+ * back in again. Export writes each row as the cursor reaches it; restore
+ * parses one record at a time into {@link DBHelper#bulkInsert}. Neither holds
+ * more than one row (plus the cursor window and I/O buffers) in memory.
+ * <p>
+ * CSV is the "name,course,image" layout {@link CsvStudentImporter} reads;
+ * JSON is an array of {"name", "course", "image"} objects.
+ */
+public class StudentBackup {
+
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        JSON("application/json", ".json");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    public interface ProgressListener {
+        // Rows written or read so far; called on the worker thread
+        void onProgress(int rows);
+    }
+
+    static final int PROGRESS_EVERY = 500;  // rows between progress callbacks
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DBHelper dbHelper;
+
+    public StudentBackup(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // ------------------------------
+    // EXPORT
+    // ------------------------------
+
+    /**
+     * Writes every live student to {@code out} in the user's order and
+     * closes it. A cancelled signal stops the export with
+     * OperationCanceledException, leaving a truncated file behind.
+     *
+     * @return the number of rows written
+     */
+    public int export(OutputStream out, Format format, boolean gzip,
+                      @Nullable ProgressListener listener,
+                      @Nullable CancellationSignal signal) throws IOException {
+        OutputStream sink = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try (RowWriter rows = format == Format.JSON ? new JsonRowWriter(writer) : new CsvRowWriter(writer);
+             Cursor cursor = dbHelper.queryForExport(signal)) {
+            int count = 0;
+            while (cursor.moveToNext()) {
+                if (signal != null) signal.throwIfCanceled();
+                rows.write(cursor.getString(0), cursor.getString(1), cursor.getString(2));
+                if (++count % PROGRESS_EVERY == 0 && listener != null) listener.onProgress(count);
+            }
+            rows.finish();
+            if (listener != null) listener.onProgress(count);
+            return count;
+        }
+    }
+
+    private interface RowWriter extends Closeable {
+        void write(String name, @Nullable String course, @Nullable String image) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write("name,course,image\r\n");
+        }
+
+        @Override
+        public void write(String name, @Nullable String course, @Nullable String image) throws IOException {
+            writeField(name);
+            writer.write(',');
+            writeField(course);
+            writer.write(',');
+            writeField(image);
+            writer.write("\r\n");
+        }
+
+        // --- RFC 4180: quote only fields that need it ---
+        private void writeField(@Nullable String value) throws IOException {
+            if (value == null) return;
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char ch = value.charAt(i);
+                quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '"') writer.write('"');
+                writer.write(ch);
+            }
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class JsonRowWriter implements RowWriter {
+        private final JsonWriter json;
+
+        JsonRowWriter(Writer writer) throws IOException {
+            this.json = new JsonWriter(writer);
+            json.beginArray();
+        }
+
+        @Override
+        public void write(String name, @Nullable String course, @Nullable String image) throws IOException {
+            json.beginObject();
+            json.name("name").value(name);
+            json.name("course").value(course);
+            json.name("image").value(image);
+            json.endObject();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            json.endArray();
+            json.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.close();
+        }
+    }
+
+    // ------------------------------
+    // RESTORE
+    // ------------------------------
+
+    /**
+     * Adds every student in {@code in} (CSV or JSON, gzipped or not; both are
+     * detected) in one transaction, and closes the stream. Unreadable input
+     * or a cancelled signal rolls the whole restore back; rows without a
+     * name are skipped and reported in the result.
+     */
+    public ImportResult restore(InputStream in, @Nullable ProgressListener listener,
+                                @Nullable CancellationSignal signal) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        InputStream source = isGzip(buffered) ? new GZIPInputStream(buffered, BUFFER_SIZE) : buffered;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(source, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            Iterator<Student> rows = isJson(reader)
+                    ? new JsonRowIterator(new JsonReader(reader))
+                    : new CsvStudentImporter.RowIterator(reader);
+            // One batch: a restore either lands completely or not at all
+            return dbHelper.bulkInsert(new Progress(rows, listener, signal), Integer.MAX_VALUE, null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isGzip(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first == 0x1f && second == 0x8b;
+    }
+
+    // First non-blank character; a CSV can't start with '['
+    private static boolean isJson(BufferedReader reader) throws IOException {
+        while (true) {
+            reader.mark(1);
+            int c = reader.read();
+            if (c == -1) return false;
+            if (!Character.isWhitespace(c) && c != '\uFEFF') {
+                reader.reset();
+                return c == '[';
+            }
+        }
+    }
+
+    // --- Parses one object per next(); unknown keys are ignored ---
+    private static final class JsonRowIterator implements Iterator<Student> {
+        private final JsonReader json;
+        private boolean started = false;
+
+        JsonRowIterator(JsonReader json) {
+            this.json = json;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                if (!started) {
+                    started = true;
+                    json.beginArray();
+                }
+                return json.hasNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Student next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String name = null;
+            String course = null;
+            String image = null;
+            try {
+                json.beginObject();
+                while (json.hasNext()) {
+                    String key = json.nextName();
+                    if (json.peek() == JsonToken.NULL) {
+                        json.nextNull();
+                    } else if (key.equals("name")) {
+                        name = json.nextString();
+                    } else if (key.equals("course")) {
+                        course = json.nextString();
+                    } else if (key.equals("image")) {
+                        image = json.nextString();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            } catch (IOException | IllegalStateException e) {
+                throw new UncheckedIOException(e instanceof IOException
+                        ? (IOException) e : new IOException("Malformed backup", e));
+            }
+            return new Student(name, course, image);
+        }
+    }
+
+    // --- Reports progress and stops at cancellation between rows ---
+    private static final class Progress implements Iterator<Student> {
+        private final Iterator<Student> rows;
+        @Nullable private final ProgressListener listener;
+        @Nullable private final CancellationSignal signal;
+        private int count = 0;
+
+        Progress(Iterator<Student> rows, @Nullable ProgressListener listener,
+                 @Nullable CancellationSignal signal) {
+            this.rows = rows;
+            this.listener = listener;
+            this.signal = signal;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (signal != null) signal.throwIfCanceled();
+            boolean more = rows.hasNext();
+            if (!more && listener != null) listener.onProgress(count);
+            return more;
+        }
+
+        @Override
+        public Student next() {
+            Student student = rows.next();
+            if (++count % PROGRESS_EVERY == 0 && listener != null) listener.onProgress(count);
+            return student;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.studentdatabase;
+
+import androidx.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Columnar, read-only list of students. Ids are an int[]; every name, its
+ * search form and the tail of every image URI live in one shared char
+ * arena addressed by offsets; courses and image URI prefixes (everything up
+ * to the last '/') are dictionary-encoded, so "BSIT" is stored once, however
+ * many rows carry it. A row costs a few dozen bytes instead of a Student
+ * with three Strings and a search key.
+ * <p>
+ * {@link #get} builds a short-lived {@link Student} for the row, so the list
+ * drops into code that expects students. {@link #narrow} filters by
+ * scanning the arena directly and shares it with the result.
+ */
+public final class StudentColumns extends AbstractList<Student> implements RandomAccess {
+
+    // Segments per row in the arena: name, normalized name, image URI tail
+    private static final int NAME = 0;
+    private static final int KEY = 1;
+    private static final int IMAGE = 2;
+    private static final int SEGMENTS = 3;
+
+    private static final char NONE = 0;  // dictionary code for a null course or image
+    private static final int STALE_CHECK_INTERVAL = 256;
+
+    private final Storage storage;
+    private final int[] rows;  // indexes into storage, in list order
+
+    private StudentColumns(Storage storage, int[] rows) {
+        this.storage = storage;
+        this.rows = rows;
+    }
+
+    @Override
+    public int size() {
+        return rows.length;
+    }
+
+    @Override
+    public Student get(int index) {
+        int row = rows[index];
+        return new Student(storage.ids[row], storage.name(row),
+                storage.courses[storage.courseCodes[row]], storage.image(row));
+    }
+
+    public int idAt(int index) {
+        return storage.ids[rows[index]];
+    }
+
+    /**
+     * The rows whose name or course has a word starting with every token
+     * (as {@link SearchText#tokens} makes them), in the same order; the same
+     * test as {@link SearchText#matches} on {@link Student#getSearchKey}.
+     *
+     * @param stale polled every few hundred rows; returns null once it is true
+     */
+    @Nullable
+    public StudentColumns narrow(String[] tokens, BooleanSupplier stale) {
+        // Course matches are decided once per course, not once per row
+        boolean[][] inCourse = new boolean[tokens.length][];
+        char[][] tokenChars = new char[tokens.length][];
+        for (int t = 0; t < tokens.length; t++) {
+            tokenChars[t] = tokens[t].toCharArray();
+            inCourse[t] = new boolean[storage.courseKeys.length];
+            for (int code = 0; code < storage.courseKeys.length; code++) {
+                inCourse[t][code] = storage.courseKeys[code].contains(tokens[t]);
+            }
+        }
+
+        int[] matched = new int[rows.length];
+        int count = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (i % STALE_CHECK_INTERVAL == 0 && stale.getAsBoolean()) return null;
+            int row = rows[i];
+            int course = storage.courseCodes[row];
+            boolean all = true;
+            for (int t = 0; t < tokens.length && all; t++) {
+                all = inCourse[t][course] || storage.contains(row, KEY, tokenChars[t]);
+            }
+            if (all) matched[count++] = row;
+        }
+        return new StudentColumns(storage, Arrays.copyOf(matched, count));
+    }
+
+    // --- Shared by every list narrowed from the same build ---
+    private static final class Storage {
+        final int[] ids;
+        final char[] courseCodes;
+        final char[] imagePrefixes;
+        final BitSet nameless;  // rows whose name is null, stored as ""
+        final int[] offsets;  // SEGMENTS per row, plus the end of the arena
+        final char[] arena;
+        final String[] courses;     // by code; NONE is null
+        final String[] courseKeys;  // normalized, by code; NONE is ""
+        final String[] prefixes;    // by code; NONE is null
+
+        Storage(Builder builder) {
+            int size = builder.size;
+            ids = Arrays.copyOf(builder.ids, size);
+            courseCodes = Arrays.copyOf(builder.courseCodes, size);
+            imagePrefixes = Arrays.copyOf(builder.imagePrefixes, size);
+            nameless = (BitSet) builder.nameless.clone();
+            offsets = Arrays.copyOf(builder.offsets, size * SEGMENTS + 1);
+            offsets[size * SEGMENTS] = builder.arenaLength;
+            arena = Arrays.copyOf(builder.arena, builder.arenaLength);
+            courses = builder.courses.toArray(new String[0]);
+            courseKeys = new String[courses.length];
+            for (int code = 0; code < courses.length; code++) {
+                courseKeys[code] = SearchText.normalize(courses[code]);
+            }
+            prefixes = builder.prefixes.toArray(new String[0]);
+        }
+
+        String text(int row, int segment) {
+            int start = offsets[row * SEGMENTS + segment];
+            return new String(arena, start, offsets[row * SEGMENTS + segment + 1] - start);
+        }
+
+        @Nullable
+        String name(int row) {
+            return nameless.get(row) ? null : text(row, NAME);
+        }
+
+        @Nullable
+        String image(int row) {
+            char prefix = imagePrefixes[row];
+            return prefix == NONE ? null : prefixes[prefix] + text(row, IMAGE);
+        }
+
+        boolean contains(int row, int segment, char[] token) {
+            int start = offsets[row * SEGMENTS + segment];
+            int last = offsets[row * SEGMENTS + segment + 1] - token.length;
+            outer:
+            for (int i = start; i <= last; i++) {
+                for (int j = 0; j < token.length; j++) {
+                    if (arena[i + j] != token[j]) continue outer;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Appends rows one at a time, e.g. straight from a cursor, without
+     * creating a Student per row.
+     */
+    public static final class Builder {
+        private int size = 0;
+        private int[] ids;
+        private char[] courseCodes;
+        private char[] imagePrefixes;
+        private final BitSet nameless = new BitSet();
+        private int[] offsets;
+        private char[] arena;
+        private int arenaLength = 0;
+        private final List<String> courses = new ArrayList<>();
+        private final Map<String, Character> courseCodeOf = new HashMap<>();
+        private final List<String> prefixes = new ArrayList<>();
+        private final Map<String, Character> prefixCodeOf = new HashMap<>();
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            ids = new int[capacity];
+            courseCodes = new char[capacity];
+            imagePrefixes = new char[capacity];
+            offsets = new int[capacity * SEGMENTS + 1];
+            arena = new char[capacity * 24];
+            courses.add(null);
+            prefixes.add(null);
+        }
+
+        /**
+         * A null name, e.g. on a row pulled from the registrar, matches no
+         * name token and reads back as null.
+         */
+        public Builder add(int id, @Nullable String name, @Nullable String course, @Nullable String image) {
+            if (size == ids.length) grow();
+            ids[size] = id;
+            courseCodes[size] = course == null ? NONE : code(course, courses, courseCodeOf);
+
+            int base = size * SEGMENTS;
+            offsets[base + NAME] = arenaLength;
+            if (name == null) {
+                nameless.set(size);
+            } else {
+                append(name);
+            }
+            offsets[base + KEY] = arenaLength;
+            append(SearchText.normalize(name));
+            offsets[base + IMAGE] = arenaLength;
+            if (image == null) {
+                imagePrefixes[size] = NONE;
+            } else {
+                int split = image.lastIndexOf('/') + 1;
+                imagePrefixes[size] = code(image.substring(0, split), prefixes, prefixCodeOf);
+                append(image.substring(split));
+            }
+            size++;
+            return this;
+        }
+
+        public StudentColumns build() {
+            int[] rows = new int[size];
+            for (int i = 0; i < size; i++) rows[i] = i;
+            return new StudentColumns(new Storage(this), rows);
+        }
+
+        private static char code(String value, List<String> values, Map<String, Character> codes) {
+            Character code = codes.get(value);
+            if (code != null) return code;
+            if (values.size() > Character.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct values: " + values.size());
+            }
+            char added = (char) values.size();
+            values.add(value);
+            codes.put(value, added);
+            return added;
+        }
+
+        private void append(String text) {
+            int length = text.length();
+            if (arenaLength + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + length));
+            }
+            text.getChars(0, length, arena, arenaLength);
+            arenaLength += length;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            courseCodes = Arrays.copyOf(courseCodes, capacity);
+            imagePrefixes = Arrays.copyOf(imagePrefixes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity * SEGMENTS + 1);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.studentdatabase;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+/**
+ * What other apps need to use {@link StudentProvider}: its URIs, MIME types
+ * and column names. Callers hold {@link #PERMISSION}, which only apps
+ * signed with the same key get.
+ * <p>
+ * {@code content://AUTHORITY/students} is every live student in the custom
+ * order; {@code .../students/<id>} is one of them. Selections and sort
+ * orders use the column names below and run in SQLite, against the
+ * table's indexes.
+ */
+public final class StudentContract {
+
+    public static final String AUTHORITY = BuildConfig.APPLICATION_ID + ".provider";
+    public static final String PERMISSION = BuildConfig.APPLICATION_ID + ".permission.ROSTER";
+    public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/students");
+
+    public static final String CONTENT_TYPE =
+            ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd." + AUTHORITY + ".student";
+    public static final String CONTENT_ITEM_TYPE =
+            ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd." + AUTHORITY + ".student";
+
+    // --- Columns ---
+    public static final String ID = BaseColumns._ID;
+    public static final String NAME = "name";
+    public static final String COURSE = "course";
+    public static final String IMAGE = "image";
+    public static final String SORT_KEY = "sort_key";  // read-only; new rows go to the end
+
+    private StudentContract() {
+    }
+}
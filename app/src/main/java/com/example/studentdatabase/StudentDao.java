@@ -0,0 +1,210 @@
+package com.example.studentdatabase;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Single-row access to the students table through statements compiled once
+ * and reused, so the hot write paths neither build ContentValues nor parse
+ * SQL per call. A statement holds its bindings between calls, so each one is
+ * used under its own lock.
+ * <p>
+ * Obtained from {@link DBHelper#getDao()}; closed with the helper.
+ */
+public class StudentDao {
+
+    static final String[] ALL_COLUMNS = {"id", "name", "course", "image", "sort_key"};
+    // List rows that only need the labels
+    static final String[] TEXT_COLUMNS = {"id", "name", "course", "sort_key"};
+
+    // Marks a row for the next sync push; binds updated_at. The sort key is local, so moves don't
+    private static final String TRACK_CHANGE =
+            "version = " + DBHelper.NEXT_VERSION + ", updated_at = ?, dirty = 1";
+
+    private static final String FIND_BY_ID =
+            "SELECT id, name, course, image, sort_key FROM " + DBHelper.STUDENTS +
+                    " WHERE id = ? AND " + DBHelper.LIVE;
+
+    private final SQLiteDatabase db;
+    private final SQLiteStatement insert;
+    private final SQLiteStatement update;
+    private final SQLiteStatement setDeleted;
+    private final SQLiteStatement purge;
+    private final SQLiteStatement imageById;
+    private final SQLiteStatement sortKeyById;
+    private final SQLiteStatement updateSortKey;
+    private final SQLiteStatement sortKeyAfter;
+    private final SQLiteStatement sortKeyBefore;
+
+    StudentDao(SQLiteDatabase db) {
+        this.db = db;
+        insert = db.compileStatement(DBHelper.INSERT_STUDENT);
+        // Never revives a tombstone's text: an edit that lost a race with a delete changes nothing
+        update = db.compileStatement("UPDATE " + DBHelper.STUDENTS + " SET name = ?, course = ?, image = ?, " +
+                TRACK_CHANGE + " WHERE id = ? AND " + DBHelper.LIVE);
+        setDeleted = db.compileStatement("UPDATE " + DBHelper.STUDENTS + " SET deleted = ?, " +
+                TRACK_CHANGE + " WHERE id = ?");
+        purge = db.compileStatement("DELETE FROM " + DBHelper.STUDENTS + " WHERE id = ? AND " + DBHelper.PURGEABLE);
+        imageById = db.compileStatement("SELECT image FROM " + DBHelper.STUDENTS + " WHERE id = ?");
+        sortKeyById = db.compileStatement("SELECT sort_key FROM " + DBHelper.STUDENTS + " WHERE id = ?");
+        updateSortKey = db.compileStatement(
+                "UPDATE " + DBHelper.STUDENTS + " SET sort_key = ? WHERE id = ?");
+        // Over every row, tombstones included: the unique index on sort_key holds their keys too
+        sortKeyAfter = db.compileStatement("SELECT IFNULL(MIN(sort_key), " + Long.MAX_VALUE + ") FROM " +
+                DBHelper.STUDENTS + " WHERE sort_key > ? AND id != ?");
+        sortKeyBefore = db.compileStatement("SELECT IFNULL(MAX(sort_key), 0) FROM " +
+                DBHelper.STUDENTS + " WHERE sort_key < ? AND id != ?");
+    }
+
+    // Row id, or -1 on failure
+    public long insert(Student student) {
+        synchronized (insert) {
+            DBHelper.bindStringOrNull(insert, 1, student.getName());
+            DBHelper.bindStringOrNull(insert, 2, student.getCourse());
+            DBHelper.bindStringOrNull(insert, 3, student.getImage());
+            insert.bindLong(4, System.currentTimeMillis());
+            return insert.executeInsert();
+        }
+    }
+
+    public int update(Student student) {
+        synchronized (update) {
+            DBHelper.bindStringOrNull(update, 1, student.getName());
+            DBHelper.bindStringOrNull(update, 2, student.getCourse());
+            DBHelper.bindStringOrNull(update, 3, student.getImage());
+            update.bindLong(4, System.currentTimeMillis());
+            update.bindLong(5, student.getId());
+            return update.executeUpdateDelete();
+        }
+    }
+
+    // Tombstones or restores the row; reads skip tombstoned rows
+    public int setDeleted(int id, boolean deleted) {
+        synchronized (setDeleted) {
+            setDeleted.bindLong(1, deleted ? 1 : 0);
+            setDeleted.bindLong(2, System.currentTimeMillis());
+            setDeleted.bindLong(3, id);
+            return setDeleted.executeUpdateDelete();
+        }
+    }
+
+    // Physically removes a row, only if it is a tombstone no sync still needs
+    public int purge(int id) {
+        synchronized (purge) {
+            purge.bindLong(1, id);
+            return purge.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * The student's image URI; null if it has none or the row doesn't exist.
+     */
+    @Nullable
+    public String imageOf(int id) {
+        synchronized (imageById) {
+            imageById.bindLong(1, id);
+            try {
+                return imageById.simpleQueryForString();
+            } catch (SQLiteDoneException e) {
+                return null;
+            }
+        }
+    }
+
+    // StudentPage.NO_KEY if the row doesn't exist
+    public long sortKeyOf(int id) {
+        synchronized (sortKeyById) {
+            sortKeyById.bindLong(1, id);
+            try {
+                return sortKeyById.simpleQueryForLong();
+            } catch (SQLiteDoneException e) {
+                return StudentPage.NO_KEY;
+            }
+        }
+    }
+
+    public int setSortKey(int id, long sortKey) {
+        synchronized (updateSortKey) {
+            updateSortKey.bindLong(1, sortKey);
+            updateSortKey.bindLong(2, id);
+            return updateSortKey.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * The smallest sort key above {@code key} held by any row but {@code id},
+     * deleted or not; Long.MAX_VALUE if there is none.
+     */
+    public long sortKeyAfter(long key, int id) {
+        synchronized (sortKeyAfter) {
+            sortKeyAfter.bindLong(1, key);
+            sortKeyAfter.bindLong(2, id);
+            return sortKeyAfter.simpleQueryForLong();
+        }
+    }
+
+    /**
+     * The largest sort key below {@code key} held by any row but {@code id},
+     * deleted or not; 0 if there is none.
+     */
+    public long sortKeyBefore(long key, int id) {
+        synchronized (sortKeyBefore) {
+            sortKeyBefore.bindLong(1, key);
+            sortKeyBefore.bindLong(2, id);
+            return sortKeyBefore.simpleQueryForLong();
+        }
+    }
+
+    @Nullable
+    public Student findById(int id) {
+        // A cursor can't come from SQLiteStatement; the constant SQL hits the
+        // connection's prepared-statement cache instead
+        Cursor cursor = db.rawQuery(FIND_BY_ID, new String[]{String.valueOf(id)});
+        try {
+            return cursor.moveToFirst() ? new StudentRowMapper(cursor).map(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Up to {@code limit} students with a sort key greater than
+     * {@code afterKey}, in sort order, reading only {@code columns} (which
+     * must include id and sort_key).
+     */
+    public ArrayList<Student> getAfter(long afterKey, int limit, String[] columns) {
+        return getAfter(null, afterKey, limit, columns);
+    }
+
+    /**
+     * As above, limited to one course when {@code course} is not null.
+     */
+    public ArrayList<Student> getAfter(@Nullable String course, long afterKey, int limit,
+                                       String[] columns) {
+        Cursor cursor = db.query(DBHelper.STUDENTS, columns, DBHelper.keysetSelection(course),
+                DBHelper.keysetArgs(course, afterKey), null, null, "sort_key", String.valueOf(limit));
+        try {
+            return StudentRowMapper.mapAll(cursor, limit);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    void close() {
+        insert.close();
+        update.close();
+        setDeleted.close();
+        purge.close();
+        imageById.close();
+        sortKeyById.close();
+        updateSortKey.close();
+        sortKeyAfter.close();
+        sortKeyBefore.close();
+    }
+}
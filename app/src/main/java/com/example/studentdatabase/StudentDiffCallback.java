@@ -0,0 +1,36 @@
+package com.example.studentdatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Row identity is the database id; row content is {@link Student#equals}.
+ * When only the text changed, the change carries {@link #PAYLOAD_TEXT} so the
+ * adapter can rebind the labels without reloading the photo.
+ */
+public class StudentDiffCallback extends DiffUtil.ItemCallback<Student> {
+
+    public static final Object PAYLOAD_TEXT = RowChanges.PAYLOAD_TEXT;
+
+    @Override
+    public boolean areItemsTheSame(@NonNull Student oldItem, @NonNull Student newItem) {
+        return oldItem.getId() == newItem.getId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull Student oldItem, @NonNull Student newItem) {
+        return oldItem.equals(newItem);
+    }
+
+    @Nullable
+    @Override
+    public Object getChangePayload(@NonNull Student oldItem, @NonNull Student newItem) {
+        return payloadFor(oldItem, newItem);
+    }
+
+    @Nullable
+    static Object payloadFor(@Nullable Student oldItem, @Nullable Student newItem) {
+        return RowChanges.payloadFor(oldItem, newItem);
+    }
+}
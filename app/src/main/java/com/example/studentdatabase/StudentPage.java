@@ -0,0 +1,43 @@
+package com.example.studentdatabase;
+
+import java.util.List;
+
+/**
+ * One page of rows plus the keyset key of its last row, which is what the
+ * next page is loaded after. Keys are longs so one pager handles every
+ * ordering: the custom order uses the sort key, ranked search packs rank and id.
+ */
+public class StudentPage {
+
+    public static final long FIRST_KEY = 0;  // before every row (ids and sort keys start at 1)
+    public static final long NO_KEY = -1;    // no such row
+
+    private final List<Student> rows;
+    private final long lastKey;
+
+    public StudentPage(List<Student> rows, long lastKey) {
+        this.rows = rows;
+        this.lastKey = lastKey;
+    }
+
+    public List<Student> getRows() {
+        return rows;
+    }
+
+    public long getLastKey() {
+        return lastKey;
+    }
+
+    // --- Ranked search keys: rank in the high word, id in the low word ---
+    static long searchKey(int rank, int id) {
+        return ((long) rank << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    static int rankOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    static int idOf(long key) {
+        return (int) key;
+    }
+}
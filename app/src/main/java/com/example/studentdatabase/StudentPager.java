@@ -0,0 +1,344 @@
+package com.example.studentdatabase;
+
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.util.SparseLongArray;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Windowed view over the students table. Rows are fetched a page at a time
+ * with keyset pagination ({@link Source}) and pages far from the last accessed
+ * position are dropped, so memory stays bounded however large the table grows.
+ * <p>
+ * All state is touched on the main thread; pages load through
+ * {@link StudentRepository} and {@link Listener} is told when they arrive.
+ * Until then {@link #get} returns null and the row shows a placeholder.
+ */
+public class StudentPager {
+
+    static final int PAGE_SIZE = 50;
+    static final int MAX_PAGES = 5;  // pages kept around the viewport
+
+    /**
+     * A keyset-ordered row set. Called on repository read threads.
+     */
+    public interface Source {
+        int count();
+
+        StudentPage loadAfter(long key, int limit);
+
+        // Key of the row offset places after key, or StudentPage.NO_KEY
+        long seek(long key, int offset);
+    }
+
+    // --- Every student, in the user's custom order ---
+    public static Source browse(DBHelper dbHelper) {
+        return new Source() {
+            @Override
+            public int count() {
+                return dbHelper.countStudents();
+            }
+
+            @Override
+            public StudentPage loadAfter(long key, int limit) {
+                return dbHelper.getStudentsAfter(key, limit);
+            }
+
+            @Override
+            public long seek(long key, int offset) {
+                return dbHelper.getSortKeyAfter(key, offset);
+            }
+        };
+    }
+
+    // --- One course, in the user's custom order ---
+    public static Source course(DBHelper dbHelper, String course) {
+        return new Source() {
+            @Override
+            public int count() {
+                return dbHelper.countStudentsInCourse(course);
+            }
+
+            @Override
+            public StudentPage loadAfter(long key, int limit) {
+                return dbHelper.getStudentsInCourseAfter(course, key, limit);
+            }
+
+            @Override
+            public long seek(long key, int offset) {
+                return dbHelper.getSortKeyInCourseAfter(course, key, offset);
+            }
+        };
+    }
+
+    // --- Full-text matches, best ranked first ---
+    public static Source search(DBHelper dbHelper, String query) {
+        return new Source() {
+            @Override
+            public int count() {
+                return dbHelper.countSearchResults(query);
+            }
+
+            @Override
+            public StudentPage loadAfter(long key, int limit) {
+                return dbHelper.searchStudents(query, key, limit);
+            }
+
+            @Override
+            public long seek(long key, int offset) {
+                return dbHelper.getSearchKeyAfter(query, key, offset);
+            }
+        };
+    }
+
+    public interface Listener {
+        void onCountChanged(int oldCount, int newCount);
+
+        // Rows whose content differs from what was shown; payload as in StudentDiffCallback
+        void onRowsChanged(int start, int count, @Nullable Object payload);
+    }
+
+    private final StudentRepository repository;
+    private final Source source;
+    private final Listener listener;
+
+    private final SparseArray<List<Student>> pages = new SparseArray<>();
+    // Generation each loaded page was read in; older pages are shown until reloaded
+    private final SparseIntArray pageGenerations = new SparseIntArray();
+    // Generation of each in-flight page load, to avoid duplicate requests
+    private final SparseIntArray loading = new SparseIntArray();
+    // Key of the last row of page (n - 1), i.e. the key page n is loaded after
+    private final SparseLongArray pageKeys = new SparseLongArray();
+    private int count = 0;
+    private int generation = 0;
+    private int lastAccessedPage = 0;
+    private boolean released = false;
+    private boolean started = true;  // false while showing seed rows, before any read
+
+    public StudentPager(StudentRepository repository, Source source, Listener listener) {
+        this.repository = repository;
+        this.source = source;
+        this.listener = listener;
+        reloadCount();
+    }
+
+    /**
+     * A pager that shows {@code firstRows} and {@code count}, e.g. from a
+     * {@link StartupSnapshot}, without touching the database until
+     * {@link #start}. The real rows then replace them like a reload, so only
+     * rows that differ are rebound.
+     */
+    public StudentPager(StudentRepository repository, Source source, Listener listener,
+                        List<Student> firstRows, int count) {
+        this.repository = repository;
+        this.source = source;
+        this.listener = listener;
+        this.count = count;
+        this.started = false;
+        pages.put(0, new ArrayList<>(firstRows));
+        pageGenerations.put(0, -1);  // stale, so it is reloaded once started
+    }
+
+    /**
+     * Starts reading from the source; only needed for a seeded pager.
+     */
+    public void start() {
+        if (started || released) return;
+        started = true;
+        reloadCount();
+        for (int i = 0; i < pages.size(); i++) {
+            requestPage(pages.keyAt(i));
+        }
+        requestPage(lastAccessedPage);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    @Nullable
+    public Student get(int position) {
+        if (position < 0 || position >= count) return null;
+        int pageIndex = position / PAGE_SIZE;
+        lastAccessedPage = pageIndex;
+        List<Student> page = pages.get(pageIndex);
+        if (page == null || pageGenerations.get(pageIndex, -1) != generation) {
+            requestPage(pageIndex);
+        }
+        if (page == null) return null;
+        int offset = position % PAGE_SIZE;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Swaps two loaded rows in memory only; persist the new order with
+     * {@link StudentRepository#moveStudents} and then {@link #invalidate}.
+     */
+    public void swap(int from, int to) {
+        List<Student> fromPage = pages.get(from / PAGE_SIZE);
+        List<Student> toPage = pages.get(to / PAGE_SIZE);
+        if (fromPage == null || toPage == null) return;
+        int fromOffset = from % PAGE_SIZE;
+        int toOffset = to % PAGE_SIZE;
+        if (fromOffset >= fromPage.size() || toOffset >= toPage.size()) return;
+        Student tmp = fromPage.get(fromOffset);
+        fromPage.set(fromOffset, toPage.get(toOffset));
+        toPage.set(toOffset, tmp);
+    }
+
+    /**
+     * Swaps in a new version of a loaded row.
+     *
+     * @return its position, or -1 if the row isn't loaded
+     */
+    public int replace(Student student) {
+        int position = positionOf(student.getId());
+        if (position >= 0) {
+            pages.get(position / PAGE_SIZE).set(position % PAGE_SIZE, student);
+        }
+        return position;
+    }
+
+    /**
+     * Adds a new row at the end, where the custom order puts new students.
+     * It goes into the last page if that is loaded; otherwise it is read
+     * with that page.
+     */
+    public void appendLocally(Student student) {
+        List<Student> page = pages.get(count / PAGE_SIZE);
+        if (page != null && page.size() == count % PAGE_SIZE) page.add(student);
+        count++;
+    }
+
+    /**
+     * Position of a loaded row, or -1.
+     */
+    public int positionOf(int id) {
+        for (int i = 0; i < pages.size(); i++) {
+            List<Student> page = pages.valueAt(i);
+            for (int j = 0; j < page.size(); j++) {
+                if (page.get(j).getId() == id) return pages.keyAt(i) * PAGE_SIZE + j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Drops a row from memory right away, ahead of the DB delete; call
+     * {@link #invalidate} once the delete has committed.
+     */
+    public void removeLocally(int position) {
+        List<Student> page = pages.get(position / PAGE_SIZE);
+        int offset = position % PAGE_SIZE;
+        if (page != null && offset < page.size()) page.remove(offset);
+        count = Math.max(0, count - 1);
+    }
+
+    /**
+     * Marks loaded rows and the count stale after the table changed. Old rows
+     * stay visible until their replacements arrive.
+     */
+    public void invalidate() {
+        if (released || !started) return;
+        generation++;
+        pageKeys.clear();
+        loading.clear();
+        reloadCount();
+        for (int i = 0; i < pages.size(); i++) {
+            requestPage(pages.keyAt(i));
+        }
+    }
+
+    /**
+     * Stops delivering results; used when the adapter switches to another pager.
+     */
+    public void release() {
+        released = true;
+        generation++;
+    }
+
+    private void reloadCount() {
+        int requestGeneration = generation;
+        repository.read(source::count, newCount -> {
+            if (requestGeneration != generation || newCount == count) return;
+            int oldCount = count;
+            count = newCount;
+            listener.onCountChanged(oldCount, newCount);
+        });
+    }
+
+    private void requestPage(int pageIndex) {
+        if (!started || loading.get(pageIndex, -1) == generation) return;
+        loading.put(pageIndex, generation);
+
+        int requestGeneration = generation;
+        int known = closestKnownPage(pageIndex);
+        long knownKey = known == 0 ? StudentPage.FIRST_KEY : pageKeys.get(known, StudentPage.NO_KEY);
+
+        repository.read(() -> {
+            long key = knownKey;
+            if (known != pageIndex) {
+                // Seek from the closest known key without reading whole rows
+                key = source.seek(knownKey, (pageIndex - known) * PAGE_SIZE - 1);
+            }
+            return key == StudentPage.NO_KEY ? null : new PageResult(key, source.loadAfter(key, PAGE_SIZE));
+        }, result -> onPageLoaded(pageIndex, requestGeneration, result));
+    }
+
+    private void onPageLoaded(int pageIndex, int requestGeneration, @Nullable PageResult result) {
+        if (requestGeneration != generation) return;
+        loading.delete(pageIndex);
+        if (result == null) return;
+
+        List<Student> rows = result.page.getRows();
+        repository.remember(rows);
+        if (pageIndex > 0) pageKeys.put(pageIndex, result.key);
+        if (rows.size() == PAGE_SIZE) {
+            pageKeys.put(pageIndex + 1, result.page.getLastKey());
+        }
+        List<Student> old = pages.get(pageIndex);
+        pages.put(pageIndex, rows);
+        pageGenerations.put(pageIndex, generation);
+        trimAround(lastAccessedPage);
+
+        int start = pageIndex * PAGE_SIZE;
+        int visible = Math.min(PAGE_SIZE, count - start);
+        if (visible <= 0) return;
+        if (old == null) {
+            listener.onRowsChanged(start, visible, null);
+        } else {
+            // Only rows that changed, so a reload after a one-row edit rebinds one row
+            RowChanges.dispatch(start, visible, old, rows, listener::onRowsChanged);
+        }
+    }
+
+    private int closestKnownPage(int pageIndex) {
+        int known = pageIndex;
+        while (known > 0 && pageKeys.get(known, StudentPage.NO_KEY) == StudentPage.NO_KEY) known--;
+        return known;
+    }
+
+    private void trimAround(int pageIndex) {
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            int index = pages.keyAt(i);
+            if (Math.abs(index - pageIndex) > MAX_PAGES / 2) {
+                pages.removeAt(i);
+                pageGenerations.delete(index);
+            }
+        }
+    }
+
+    private static final class PageResult {
+        final long key;
+        final StudentPage page;
+
+        PageResult(long key, StudentPage page) {
+            this.key = key;
+            this.page = page;
+        }
+    }
+}
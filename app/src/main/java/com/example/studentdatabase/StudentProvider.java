@@ -0,0 +1,342 @@
+package com.example.studentdatabase;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+import android.os.OperationCanceledException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The students table for other apps; see {@link StudentContract}. Reads
+ * run on the calling binder thread against the shared {@link DBHelper};
+ * projections, selections and sort orders go straight into the SQL.
+ * <p>
+ * Every write call, including a whole {@link #bulkInsert} or
+ * {@link #applyBatch}, is one transaction on the repository's writer thread,
+ * so it goes through the same course counts and search index as the app's
+ * own writes and never interleaves with them. Its changes are announced once
+ * it commits: a few updated rows as one URI each, anything larger (or any
+ * insert or delete) as one change to {@link StudentContract#CONTENT_URI}.
+ */
+public class StudentProvider extends ContentProvider {
+
+    private static final int STUDENTS = 1;
+    private static final int STUDENT_ID = 2;
+
+    // Updated rows announced one by one; past this, the table changes as a whole
+    static final int MAX_ROW_NOTIFICATIONS = 10;
+
+    // Live rows under the contract's names. SQLite flattens this into the
+    // outer query, so caller selections still use the table's indexes.
+    private static final String LIVE_STUDENTS = "(SELECT id AS " + StudentContract.ID +
+            ", name, course, image, sort_key FROM " + DBHelper.STUDENTS + " WHERE " + DBHelper.LIVE + ")";
+    private static final String[] ALL_COLUMNS = {StudentContract.ID, StudentContract.NAME,
+            StudentContract.COURSE, StudentContract.IMAGE, StudentContract.SORT_KEY};
+    private static final Map<String, String> PROJECTION = new HashMap<>();
+
+    static {
+        for (String column : ALL_COLUMNS) PROJECTION.put(column, column);
+    }
+
+    private final UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
+    // Changes of the write running on this thread; set only on the writer thread
+    private final ThreadLocal<Changes> openWrite = new ThreadLocal<>();
+    private StudentRepository repository;
+    private DBHelper dbHelper;
+
+    @Override
+    public boolean onCreate() {
+        matcher.addURI(StudentContract.AUTHORITY, "students", STUDENTS);
+        matcher.addURI(StudentContract.AUTHORITY, "students/#", STUDENT_ID);
+        // Runs at process start: the database itself is opened by the first call
+        repository = StudentRepository.getInstance(getContext());
+        dbHelper = repository.getDbHelper();
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        switch (matcher.match(uri)) {
+            case STUDENTS:
+                return StudentContract.CONTENT_TYPE;
+            case STUDENT_ID:
+                return StudentContract.CONTENT_ITEM_TYPE;
+            default:
+                return null;
+        }
+    }
+
+    // ------------------------------
+    // READ
+    // ------------------------------
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        Cursor cursor = queryBuilder(uri).query(dbHelper.getReadableDatabase(),
+                projection == null ? ALL_COLUMNS : projection, selection, selectionArgs, null, null,
+                sortOrder == null ? StudentContract.SORT_KEY : sortOrder);
+        cursor.setNotificationUri(getContext().getContentResolver(), StudentContract.CONTENT_URI);
+        return cursor;
+    }
+
+    private SQLiteQueryBuilder queryBuilder(Uri uri) {
+        int match = matcher.match(uri);
+        if (match != STUDENTS && match != STUDENT_ID) {
+            throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(LIVE_STUDENTS);
+        // Unknown columns and selections that try to escape their parentheses are rejected
+        builder.setProjectionMap(PROJECTION);
+        builder.setStrict(true);
+        if (match == STUDENT_ID) {
+            builder.appendWhere(StudentContract.ID + " = " + ContentUris.parseId(uri));
+        }
+        return builder;
+    }
+
+    // ------------------------------
+    // WRITE
+    // ------------------------------
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        requireTable(uri);
+        Student student = toStudent(values);
+        if (student.getName() == null) throw new IllegalArgumentException("Name is required");
+        long id = write(changes -> {
+            long rowId = dbHelper.addStudent(student);
+            if (rowId != -1) changes.rowsAddedOrRemoved = true;
+            return rowId;
+        });
+        return id == -1 ? null : ContentUris.withAppendedId(StudentContract.CONTENT_URI, id);
+    }
+
+    /**
+     * All rows in one transaction. Rows without a name are skipped, as in
+     * an import.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        requireTable(uri);
+        List<Student> students = new ArrayList<>(values.length);
+        for (ContentValues row : values) students.add(toStudent(row));
+        return write(changes -> {
+            int inserted = dbHelper.bulkInsert(students.iterator(), Integer.MAX_VALUE, null).getInserted();
+            if (inserted > 0) changes.rowsAddedOrRemoved = true;
+            return inserted;
+        });
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        toStudent(values);  // reject bad values before touching any row
+        ThumbnailCache thumbnails = ThumbnailCache.getInstance(getContext());
+        return write(changes -> {
+            int updated = 0;
+            for (int id : matchingIds(uri, selection, selectionArgs)) {
+                Student student = dbHelper.getStudentById(id);
+                if (student == null) continue;
+                String imageBefore = student.getImage();
+                applyValues(values, student);
+                if (dbHelper.updateStudent(student) > 0) {
+                    updated++;
+                    changes.ids.add(id);
+                    if (!Objects.equals(imageBefore, student.getImage())) thumbnails.invalidate(imageBefore);
+                }
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Removes the rows; unlike a delete in the app, there is no undo. A
+     * tombstone stays behind only until a sync has sent the delete.
+     */
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        ThumbnailCache thumbnails = ThumbnailCache.getInstance(getContext());
+        return write(changes -> {
+            List<Integer> deleted = new ArrayList<>();
+            for (int id : matchingIds(uri, selection, selectionArgs)) {
+                if (dbHelper.deleteStudent(id) > 0) deleted.add(id);
+            }
+            for (String image : dbHelper.purgeStudents(deleted)) {
+                thumbnails.invalidate(image);
+            }
+            changes.ids.addAll(deleted);
+            if (!deleted.isEmpty()) changes.rowsAddedOrRemoved = true;
+            return deleted.size();
+        });
+    }
+
+    /**
+     * Applies every operation in one transaction, announcing the result once.
+     * A failing operation rolls back the whole batch.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // The operations call insert/update/delete, which join the open transaction
+        return writeOnWriterThread(changes -> super.applyBatch(operations));
+    }
+
+    private interface Work<T> {
+        T apply(Changes changes) throws Exception;
+    }
+
+    private <T> T write(Work<T> work) {
+        Changes open = openWrite.get();
+        if (open != null) {
+            // Part of an applyBatch: already on the writer thread, inside its transaction
+            try {
+                return work.apply(open);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        try {
+            return writeOnWriterThread(work);
+        } catch (OperationApplicationException e) {
+            throw new IllegalStateException(e);  // only applyBatch throws it
+        }
+    }
+
+    private <T> T writeOnWriterThread(Work<T> work) throws OperationApplicationException {
+        Changes changes = new Changes();
+        Future<T> result = repository.submitWrite(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            boolean committed = false;
+            openWrite.set(changes);
+            db.beginTransactionNonExclusive();
+            try {
+                T value = work.apply(changes);
+                db.setTransactionSuccessful();
+                committed = true;
+                return value;
+            } finally {
+                db.endTransaction();
+                openWrite.remove();
+                if (!committed) {
+                    // Counts and index were adjusted for rows that are now rolled back
+                    dbHelper.unloadIndexes();
+                }
+            }
+        });
+        try {
+            T value = result.get();
+            announce(changes);
+            return value;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof OperationApplicationException) throw (OperationApplicationException) cause;
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            // The write itself still runs, but goes unannounced
+            Thread.currentThread().interrupt();
+            throw new OperationCanceledException();
+        }
+    }
+
+    // --- Ids of the live rows a URI and selection address, read in the open transaction ---
+    private List<Integer> matchingIds(Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        Cursor cursor = queryBuilder(uri).query(dbHelper.getWritableDatabase(),
+                new String[]{StudentContract.ID}, selection, selectionArgs, null, null, null);
+        try {
+            List<Integer> ids = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) ids.add(cursor.getInt(0));
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // --- Coalesced change notification for one committed write ---
+    private void announce(Changes changes) {
+        if (!changes.rowsAddedOrRemoved && changes.ids.isEmpty()) return;
+        for (int id : changes.ids) repository.forget(id);
+        repository.saveStartupSnapshot();
+
+        ContentResolver resolver = getContext().getContentResolver();
+        if (changes.rowsAddedOrRemoved || changes.ids.size() > MAX_ROW_NOTIFICATIONS) {
+            // Positions shifted or too many rows to name: one change for the table
+            resolver.notifyChange(StudentContract.CONTENT_URI, null);
+            return;
+        }
+        for (int id : changes.ids) {
+            resolver.notifyChange(ContentUris.withAppendedId(StudentContract.CONTENT_URI, id), null);
+        }
+    }
+
+    private static final class Changes {
+        boolean rowsAddedOrRemoved = false;
+        final Set<Integer> ids = new LinkedHashSet<>();  // updated or deleted
+    }
+
+    // ------------------------------
+    // VALUES
+    // ------------------------------
+    private void requireTable(Uri uri) {
+        if (matcher.match(uri) != STUDENTS) {
+            throw new IllegalArgumentException("Inserts go to " + StudentContract.CONTENT_URI + ", not " + uri);
+        }
+    }
+
+    private static Student toStudent(@Nullable ContentValues values) {
+        Student student = new Student();
+        applyValues(values, student);
+        return student;
+    }
+
+    // Name, course and image are writable; the rest belong to the app
+    private static void applyValues(@Nullable ContentValues values, Student student) {
+        if (values == null) return;
+        for (String key : values.keySet()) {
+            switch (key) {
+                case StudentContract.NAME:
+                    String name = values.getAsString(key);
+                    if (name == null || name.trim().isEmpty()) {
+                        throw new IllegalArgumentException("Name is required");
+                    }
+                    student.setName(name.trim());
+                    break;
+                case StudentContract.COURSE:
+                    student.setCourse(values.getAsString(key));
+                    break;
+                case StudentContract.IMAGE:
+                    student.setImage(values.getAsString(key));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Column can't be written: " + key);
+            }
+        }
+    }
+}
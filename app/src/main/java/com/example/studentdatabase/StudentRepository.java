@@ -0,0 +1,605 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Asynchronous front for {@link DBHelper}. Reads run on a small pool (WAL lets
+ * them proceed alongside writes); writes go through one writer thread, and
+ * writes queued while it is busy are applied together in one transaction.
+ * Results are delivered on the main looper.
+ * <p>
+ * Rows seen recently are kept in an id-indexed cache, and every committed
+ * insert, update and delete is announced to {@link Observer}s, so screens
+ * patch the one row that changed instead of reloading.
+ * <p>
+ * A short while after writes commit, the first screen is saved as a
+ * {@link StartupSnapshot} for the next cold start. Picked photos are copied
+ * into the {@link ImageStore} before the row that shows them is saved.
+ */
+public class StudentRepository {
+
+    private static final String TAG = "StudentRepository";
+    private static final int READ_THREADS = 2;
+    private static final int PURGE_BATCH_SIZE = 200;  // rows per purge transaction
+    private static final int CACHE_SIZE = 1000;       // students kept by id
+    private static final long SNAPSHOT_DELAY_MS = 1000;  // coalesces a burst of writes into one save
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * Committed row changes, on the main thread, before the write's own callback.
+     */
+    public interface Observer {
+        void onStudentInserted(Student student);
+
+        void onStudentUpdated(Student student);
+
+        void onStudentDeleted(int id);
+
+        /**
+         * A deleted student is back, in its old place in the order rather
+         * than at the end. Treated as an insert unless overridden.
+         */
+        default void onStudentRestored(Student student) {
+            onStudentInserted(student);
+        }
+    }
+
+    private static volatile StudentRepository instance;
+
+    public static StudentRepository getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (StudentRepository.class) {
+                if (instance == null) {
+                    instance = new StudentRepository(DBHelper.getInstance(context),
+                            ThumbnailCache.getInstance(context), ImageStore.getInstance(context),
+                            StartupSnapshot.fileIn(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final DBHelper dbHelper;
+    private final ThumbnailCache thumbnails;
+    private final ImageStore images;
+    private final ExecutorService readExecutor = Executors.newFixedThreadPool(READ_THREADS);
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    // Photo ingestion and cleanup: file I/O and decoding that would hold up reads
+    private final ExecutorService imageExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<Integer, Student> cache = new LruCache<>(CACHE_SIZE);
+    private final List<Observer> observers = new ArrayList<>();  // main thread only
+
+    private final List<PendingWrite> pendingWrites = new ArrayList<>();
+    private boolean drainScheduled = false;
+
+    private final File snapshotFile;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+
+    // Tests make one per fresh database; the app goes through getInstance
+    StudentRepository(DBHelper dbHelper, ThumbnailCache thumbnails, ImageStore images, File snapshotFile) {
+        this.dbHelper = dbHelper;
+        this.thumbnails = thumbnails;
+        this.images = images;
+        this.snapshotFile = snapshotFile;
+    }
+
+    public DBHelper getDbHelper() {
+        return dbHelper;
+    }
+
+    // ------------------------------
+    // READS
+    // ------------------------------
+    public <T> Future<T> read(Callable<T> query, @Nullable Callback<T> callback) {
+        return readExecutor.submit(() -> {
+            try {
+                T result = query.call();
+                deliver(callback, result);
+                return result;
+            } catch (Exception e) {
+                Log.e(TAG, "Read failed", e);
+                throw e;
+            }
+        });
+    }
+
+    public void getStudentById(int id, Callback<Student> callback) {
+        Student cached = cache.get(id);
+        if (cached != null) {
+            deliver(callback, cached);
+            return;
+        }
+        read(() -> dbHelper.getStudentById(id), student -> {
+            if (student != null) cache.put(id, student);
+            callback.onResult(student);
+        });
+    }
+
+    /**
+     * Live students per course. Runs on the writer thread, so the counts
+     * are loaded between writes and never miss one.
+     */
+    public void getCourseCounts(Callback<Map<String, Integer>> callback) {
+        writeExecutor.execute(() -> deliver(callback, dbHelper.getCourseCounts()));
+    }
+
+    /**
+     * Typo-tolerant search, for callers already on a worker thread. The
+     * first call loads the trigram index on the writer thread, between
+     * writes, so it can't miss one; later calls only read it.
+     */
+    public StudentColumns fuzzySearch(String query, int limit) throws ExecutionException, InterruptedException {
+        if (!dbHelper.isFuzzyIndexLoaded()) {
+            writeExecutor.submit(dbHelper::loadFuzzyIndex).get();
+        }
+        return dbHelper.fuzzySearch(query, limit);
+    }
+
+    /**
+     * Drops a cached row that changed without going through this repository,
+     * e.g. through {@link StudentProvider}.
+     */
+    public void forget(int id) {
+        cache.remove(id);
+    }
+
+    /**
+     * Adds rows read elsewhere (e.g. a pager page) to the id cache.
+     */
+    public void remember(List<Student> students) {
+        for (Student student : students) {
+            cache.put(student.getId(), student);
+        }
+    }
+
+    // ------------------------------
+    // CHANGE EVENTS
+    // ------------------------------
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    // --- Main thread: keep the cache in step, then tell observers ---
+    private void publish(int kind, int id, @Nullable Student student) {
+        if (kind == PendingWrite.DELETE) {
+            cache.remove(id);
+        } else if (student != null) {
+            cache.put(id, student);
+        }
+        for (Observer observer : new ArrayList<>(observers)) {
+            if (kind == PendingWrite.INSERT) {
+                observer.onStudentInserted(student);
+            } else if (kind == PendingWrite.UPDATE) {
+                observer.onStudentUpdated(student);
+            } else if (kind == PendingWrite.DELETE) {
+                observer.onStudentDeleted(id);
+            } else if (kind == PendingWrite.RESTORE) {
+                observer.onStudentRestored(student);
+            }
+        }
+    }
+
+    public Future<Integer> countStudents(@Nullable Callback<Integer> callback) {
+        return read(dbHelper::countStudents, callback);
+    }
+
+    // ------------------------------
+    // WRITES
+    // ------------------------------
+    public void addStudent(Student student, @Nullable Callback<Long> callback) {
+        PendingWrite write = new PendingWrite(PendingWrite.INSERT, student.getId(), student);
+        write.insertCallback = callback;
+        enqueue(write);
+    }
+
+    public void updateStudent(Student student, @Nullable Callback<Boolean> callback) {
+        PendingWrite write = new PendingWrite(PendingWrite.UPDATE, student.getId(), student);
+        write.addCallback(callback);
+        enqueue(write);
+    }
+
+    /**
+     * Tombstones the student; see {@link #restoreStudents} and {@link #purgeStudents}.
+     */
+    public void deleteStudent(int id, @Nullable Callback<Boolean> callback) {
+        PendingWrite write = new PendingWrite(PendingWrite.DELETE, id, null);
+        write.addCallback(callback);
+        enqueue(write);
+    }
+
+    /**
+     * Undoes deletes that haven't been purged yet. The callback runs once,
+     * after the last restore.
+     */
+    public void restoreStudents(List<Integer> ids, @Nullable Callback<Boolean> callback) {
+        for (int i = 0; i < ids.size(); i++) {
+            PendingWrite write = new PendingWrite(PendingWrite.RESTORE, ids.get(i), null);
+            if (i == ids.size() - 1) write.addCallback(callback);
+            enqueue(write);
+        }
+    }
+
+    /**
+     * Physically removes tombstoned students once their undo window has
+     * closed, a batch per transaction, and drops their thumbnails.
+     */
+    public void purgeStudents(List<Integer> ids) {
+        List<Integer> copy = new ArrayList<>(ids);
+        writeExecutor.execute(() -> purgeBatch(copy, 0));
+    }
+
+    /**
+     * Purges every tombstoned student, e.g. ones left by a process that died
+     * during an undo window, then deletes stored photos no row uses any more.
+     */
+    public void purgeDeleted() {
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Integer> ids = dbHelper.getDeletedIds(PURGE_BATCH_SIZE);
+                purgeBatch(ids, 0);
+                if (ids.size() == PURGE_BATCH_SIZE) {
+                    writeExecutor.execute(this);
+                } else {
+                    imageExecutor.execute(StudentRepository.this::collectImages);
+                }
+            }
+        });
+    }
+
+    private void purgeBatch(List<Integer> ids, int from) {
+        int to = Math.min(ids.size(), from + PURGE_BATCH_SIZE);
+        try {
+            for (String image : dbHelper.purgeStudents(ids.subList(from, to))) {
+                thumbnails.invalidate(image);
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, "Purge failed", e);
+            return;
+        }
+        if (to < ids.size()) {
+            // Let writes queued meanwhile go before the next batch
+            writeExecutor.execute(() -> purgeBatch(ids, to));
+        }
+    }
+
+    // Reads the references after the purge, so photos of purged rows can go
+    private void collectImages() {
+        try {
+            for (String image : images.collectGarbage(dbHelper.getImagesUnder(images.getUriPrefix()))) {
+                thumbnails.invalidate(image);
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, "Image cleanup failed", e);
+        }
+    }
+
+    /**
+     * Copies a picked photo into the {@link ImageStore} off the main thread.
+     * The callback gets the URI to save in the row, or null if the photo
+     * couldn't be read.
+     */
+    public void storeImage(Uri picked, Callback<String> callback) {
+        imageExecutor.execute(() -> {
+            String stored = null;
+            try {
+                stored = images.ingest(picked);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Could not store " + picked, e);
+            }
+            deliver(callback, stored);
+        });
+    }
+
+    /**
+     * Runs a bulk import on the writer thread, after any writes already queued.
+     */
+    public void bulkInsert(Iterator<Student> students, int batchSize,
+                           @Nullable DBHelper.ImportListener listener,
+                           @Nullable Callback<ImportResult> callback) {
+        writeExecutor.execute(() -> {
+            ImportResult result = dbHelper.bulkInsert(students, batchSize, listener);
+            saveStartupSnapshot();
+            deliver(callback, result);
+        });
+    }
+
+    /**
+     * Streams every live student to {@code out} on a read thread, so writes
+     * go on meanwhile, and closes it. The callback gets the number of rows
+     * written, or null if the export failed or was cancelled.
+     */
+    public void exportStudents(OutputStream out, StudentBackup.Format format, boolean gzip,
+                               @Nullable Callback<Integer> progress, CancellationSignal signal,
+                               Callback<Integer> callback) {
+        readExecutor.execute(() -> {
+            Integer rows = null;
+            try {
+                rows = new StudentBackup(dbHelper).export(out, format, gzip,
+                        count -> deliver(progress, count), signal);
+            } catch (OperationCanceledException e) {
+                Log.i(TAG, "Export cancelled");
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Export failed", e);
+            }
+            deliver(callback, rows);
+        });
+    }
+
+    /**
+     * Adds every student from a backup made by {@link #exportStudents} (or
+     * any CSV the importer reads) on the writer thread, in one transaction,
+     * and closes {@code in}. The callback gets the result, or null if the
+     * restore failed or was cancelled and nothing was added.
+     */
+    public void restoreBackup(InputStream in, @Nullable Callback<Integer> progress,
+                              CancellationSignal signal, Callback<ImportResult> callback) {
+        writeExecutor.execute(() -> {
+            ImportResult result = null;
+            try {
+                result = new StudentBackup(dbHelper).restore(in, count -> deliver(progress, count), signal);
+            } catch (OperationCanceledException e) {
+                Log.i(TAG, "Restore cancelled");
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Restore failed", e);
+            }
+            if (result != null) saveStartupSnapshot();
+            deliver(callback, result);
+        });
+    }
+
+    /**
+     * Runs {@code work} on the writer thread, after the writes already
+     * queued, for callers that must answer synchronously such as
+     * {@link StudentProvider}. The in-memory counts and indexes rely on
+     * every write going through this thread.
+     */
+    public <T> Future<T> submitWrite(Callable<T> work) {
+        return writeExecutor.submit(work);
+    }
+
+    /**
+     * Persists the moves of one drag gesture in a single transaction, in order.
+     */
+    public void moveStudents(List<Move> moves, @Nullable Callback<Boolean> callback) {
+        writeExecutor.execute(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            boolean moved = true;
+            db.beginTransactionNonExclusive();
+            try {
+                for (Move move : moves) {
+                    moved &= dbHelper.moveStudent(move.id, move.prevId, move.nextId);
+                }
+                db.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e(TAG, "Reorder failed", e);
+                moved = false;
+            } finally {
+                db.endTransaction();
+            }
+            saveStartupSnapshot();
+            deliver(callback, moved);
+        });
+    }
+
+    // --- A student dropped between two others (DBHelper.NO_NEIGHBOUR at the ends) ---
+    public static final class Move {
+        final int id;
+        final int prevId;
+        final int nextId;
+
+        public Move(int id, int prevId, int nextId) {
+            this.id = id;
+            this.prevId = prevId;
+            this.nextId = nextId;
+        }
+    }
+
+    private void enqueue(PendingWrite write) {
+        synchronized (pendingWrites) {
+            if (write.kind == PendingWrite.UPDATE) {
+                // A newer update of the same row makes a queued one redundant. A delete
+                // or restore doesn't: an undone delete has to bring the edit back with it.
+                // Nor is an update moved past one, where it would find a tombstone.
+                for (int i = pendingWrites.size() - 1; i >= 0; i--) {
+                    PendingWrite queued = pendingWrites.get(i);
+                    if (queued.kind == PendingWrite.INSERT || queued.id != write.id) continue;
+                    if (queued.kind != PendingWrite.UPDATE) break;
+                    write.callbacks.addAll(0, queued.callbacks);
+                    pendingWrites.remove(i);
+                }
+            }
+            pendingWrites.add(write);
+            if (!drainScheduled) {
+                drainScheduled = true;
+                writeExecutor.execute(this::drainWrites);
+            }
+        }
+    }
+
+    private void drainWrites() {
+        List<PendingWrite> batch;
+        synchronized (pendingWrites) {
+            batch = new ArrayList<>(pendingWrites);
+            pendingWrites.clear();
+            drainScheduled = false;
+        }
+
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransactionNonExclusive();
+            try {
+                for (PendingWrite write : batch) {
+                    try {
+                        write.result = write.apply(dbHelper, thumbnails);
+                    } catch (SQLException e) {
+                        Log.e(TAG, "Write failed for student " + write.id, e);
+                        write.result = -1;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            saveStartupSnapshot();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Write batch rolled back", e);
+            // Counts and index were adjusted for rows that are now rolled back
+            dbHelper.unloadIndexes();
+            for (PendingWrite write : batch) {
+                write.result = -1;  // every caller hears that its write failed
+            }
+        }
+
+        for (PendingWrite write : batch) {
+            write.deliver(this);
+        }
+    }
+
+    // ------------------------------
+    // STARTUP SNAPSHOT
+    // ------------------------------
+
+    /**
+     * The first screen as last saved, read without opening the DB; null
+     * before the first save.
+     */
+    @Nullable
+    public StartupSnapshot readStartupSnapshot() {
+        return StartupSnapshot.read(snapshotFile);
+    }
+
+    /**
+     * Saves the first screen shortly, on the writer thread, so it reflects
+     * every write committed by then. Calls made before that save are merged
+     * into it.
+     */
+    public void saveStartupSnapshot() {
+        if (!snapshotScheduled.compareAndSet(false, true)) return;
+        mainHandler.postDelayed(() -> writeExecutor.execute(this::writeStartupSnapshot), SNAPSHOT_DELAY_MS);
+    }
+
+    private void writeStartupSnapshot() {
+        // Writes that commit from here on schedule another save
+        snapshotScheduled.set(false);
+        try {
+            List<Student> rows = dbHelper.getStudentsAfter(StudentPage.FIRST_KEY, StartupSnapshot.ROWS).getRows();
+            StartupSnapshot.write(snapshotFile, rows, dbHelper.countStudents());
+        } catch (IOException | SQLException e) {
+            Log.w(TAG, "Startup snapshot not saved", e);
+        }
+    }
+
+    private <T> void deliver(@Nullable Callback<T> callback, T result) {
+        if (callback != null) {
+            mainHandler.post(() -> callback.onResult(result));
+        }
+    }
+
+    // --- One queued insert/update/delete ---
+    private static final class PendingWrite {
+        static final int INSERT = 0;
+        static final int UPDATE = 1;
+        static final int DELETE = 2;
+        static final int RESTORE = 3;
+
+        final int kind;
+        final int id;
+        @Nullable final Student student;
+        @Nullable Callback<Long> insertCallback;
+        @Nullable Student restored;  // the row as it came back, for observers
+        final List<Callback<Boolean>> callbacks = new ArrayList<>(1);
+        long result;
+
+        PendingWrite(int kind, int id, @Nullable Student student) {
+            this.kind = kind;
+            this.id = id;
+            this.student = student;
+        }
+
+        void addCallback(@Nullable Callback<Boolean> callback) {
+            if (callback != null) callbacks.add(callback);
+        }
+
+        long apply(DBHelper dbHelper, ThumbnailCache thumbnails) {
+            switch (kind) {
+                case INSERT:
+                    long rowId = dbHelper.addStudent(student);
+                    if (rowId != -1) {
+                        // Observers place the new row by its key
+                        student.setId((int) rowId);
+                        student.setSortKey(dbHelper.getDao().sortKeyOf((int) rowId));
+                    }
+                    return rowId;
+                case UPDATE:
+                    // Only the image is compared, so skip reading the whole row
+                    String imageBefore = dbHelper.getDao().imageOf(id);
+                    int updated = dbHelper.updateStudent(student);
+                    student.setSortKey(dbHelper.getDao().sortKeyOf(id));
+                    if (updated > 0 && !Objects.equals(imageBefore, student.getImage())) {
+                        // The old photo is no longer shown for this student
+                        thumbnails.invalidate(imageBefore);
+                    }
+                    return updated;
+                case RESTORE:
+                    int restoredRows = dbHelper.restoreStudent(id);
+                    if (restoredRows > 0) restored = dbHelper.getStudentById(id);
+                    return restoredRows;
+                default:
+                    return dbHelper.deleteStudent(id);
+            }
+        }
+
+        void deliver(StudentRepository repository) {
+            boolean changed = kind == INSERT ? result != -1 : result > 0;
+            Student row = kind == RESTORE ? restored : student;
+            if (changed && (kind != RESTORE || row != null)) {
+                int rowId = kind == INSERT ? (int) result : id;
+                repository.mainHandler.post(() -> repository.publish(kind, rowId, row));
+            }
+            if (kind == INSERT) {
+                repository.deliver(insertCallback, result);
+            } else {
+                for (Callback<Boolean> callback : callbacks) {
+                    repository.deliver(callback, result > 0);
+                }
+            }
+        }
+    }
+}
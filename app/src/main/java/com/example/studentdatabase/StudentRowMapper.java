@@ -0,0 +1,53 @@
+package com.example.studentdatabase;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+
+/**
+ * Turns cursor rows into {@link Student}s. Column indices are looked up once
+ * per cursor rather than once per row. Columns left out of a narrow
+ * projection (e.g. {@link StudentDao#TEXT_COLUMNS}) map to null.
+ */
+final class StudentRowMapper {
+
+    private final int idCol;
+    private final int nameCol;
+    private final int courseCol;
+    private final int imageCol;
+    private final int sortKeyCol;
+
+    StudentRowMapper(Cursor cursor) {
+        idCol = cursor.getColumnIndexOrThrow("id");
+        nameCol = cursor.getColumnIndex("name");
+        courseCol = cursor.getColumnIndex("course");
+        imageCol = cursor.getColumnIndex("image");
+        sortKeyCol = cursor.getColumnIndex("sort_key");
+    }
+
+    Student map(Cursor cursor) {
+        Student student = new Student(cursor.getInt(idCol), stringAt(cursor, nameCol),
+                stringAt(cursor, courseCol), stringAt(cursor, imageCol));
+        if (sortKeyCol >= 0) student.setSortKey(cursor.getLong(sortKeyCol));
+        return student;
+    }
+
+    /**
+     * Every remaining row of the cursor, from the first one.
+     */
+    static ArrayList<Student> mapAll(Cursor cursor, int expected) {
+        ArrayList<Student> list = new ArrayList<>(expected);
+        if (cursor.moveToFirst()) {
+            StudentRowMapper mapper = new StudentRowMapper(cursor);
+            do {
+                list.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+        Metrics.add(Metrics.DB_ROWS_READ, list.size());
+        return list;
+    }
+
+    private static String stringAt(Cursor cursor, int column) {
+        return column < 0 ? null : cursor.getString(column);
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.studentdatabase;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Two-way delta sync with the registrar. Every write in {@link DBHelper}
+ * gives the row a new local version, an updated_at time and a pending flag,
+ * and deletes leave tombstones, so a sync only moves what changed:
+ * <ol>
+ * <li>Pull: {@code GET <registrar>/changes?since=<checkpoint>&limit=&client=}
+ * returns {@code {"changes": [...], "next": "<checkpoint>", "more": bool}}.
+ * Each page is applied together with its checkpoint in one transaction, so
+ * an interrupted pull picks up after the last page that landed.</li>
+ * <li>Push: {@code POST <registrar>/changes?client=} with
+ * {@code {"changes": [...]}}, pending rows in change order, a page at a time.
+ * The answer is {@code {"accepted": [{"id", "version"}], "rejected": [...]}};
+ * rows stay pending until accepted, so an interrupted push resends only
+ * what wasn't.</li>
+ * </ol>
+ * A change is {@code {"id", "name", "course", "image", "deleted", "updatedAt",
+ * "version"}}; a pushed one carries the registrar version it was based on.
+ * Only images other devices can load are synced ({@link #isPortable}):
+ * photos in this device's {@link ImageStore} or behind a picker grant are
+ * left out, and a change without an image keeps the receiver's own.
+ * Bodies are gzipped both ways. The registrar leaves a client's own
+ * changes out of its pulls.
+ * <p>
+ * A row changed on both sides keeps the later edit by updatedAt; on a tie
+ * the registrar's copy wins. The registrar uses the same rule when it
+ * rejects a push, so both ends settle on the same row.
+ * <p>
+ * {@link #sync} blocks on the network; call it on a background thread.
+ * Database writes go through the repository's writer thread.
+ */
+public class StudentSync {
+
+    static final String CLIENT_ID = "client_id";      // sync_state key, set by the migration
+    static final String PULL_CHECKPOINT = "pull";     // sync_state key
+    static final int PAGE_SIZE = 500;                 // changes per request
+    private static final int TIMEOUT_MS = 30_000;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * One row as the registrar sees it, keyed by its remote id.
+     */
+    public static final class Change {
+        final String id;
+        @Nullable final String name;
+        @Nullable final String course;
+        @Nullable final String image;  // null in a pulled change: keep the local one
+        final boolean deleted;
+        final long updatedAt;     // ms since the epoch, when the edit was made
+        final long version;       // registrar's change number; for a push, the one edited on top of
+        final long localVersion;  // for pending local changes, to tell if the row changed again
+
+        Change(String id, @Nullable String name, @Nullable String course, @Nullable String image,
+               boolean deleted, long updatedAt, long version, long localVersion) {
+            this.id = id;
+            this.name = name;
+            this.course = course;
+            this.image = image;
+            this.deleted = deleted;
+            this.updatedAt = updatedAt;
+            this.version = version;
+            this.localVersion = localVersion;
+        }
+
+        Change withVersion(long version) {
+            return new Change(id, name, course, image, deleted, updatedAt, version, localVersion);
+        }
+    }
+
+    public static final class Result {
+        int pulled = 0;     // registrar changes applied here
+        int pushed = 0;     // local changes the registrar accepted
+        int conflicts = 0;  // rows changed on both sides
+        final List<Integer> changedIds = new ArrayList<>();
+
+        public int getPulled() {
+            return pulled;
+        }
+
+        public int getPushed() {
+            return pushed;
+        }
+
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        void applied(int id) {
+            pulled++;
+            changedIds.add(id);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "pulled " + pulled + ", pushed " + pushed + ", conflicts " + conflicts;
+        }
+    }
+
+    /**
+     * Whether other devices could load this image URI. Files (the image
+     * store) and content URIs (granted to this app on this device) can't.
+     */
+    static boolean isPortable(@Nullable String image) {
+        return image != null && !image.startsWith(ContentResolver.SCHEME_FILE + ":")
+                && !image.startsWith(ContentResolver.SCHEME_CONTENT + ":");
+    }
+
+    // Whether the registrar's copy replaces a row that was also edited here
+    static boolean remoteWins(long localUpdatedAt, Change remote) {
+        return remote.updatedAt >= localUpdatedAt;
+    }
+
+    private final Context context;
+    private final StudentRepository repository;
+    private final DBHelper dbHelper;
+    private final URL registrar;
+
+    public StudentSync(Context context, StudentRepository repository, URL registrar) {
+        this.context = context.getApplicationContext();
+        this.repository = repository;
+        this.dbHelper = repository.getDbHelper();
+        this.registrar = registrar;
+    }
+
+    /**
+     * Pulls, then pushes, every change since the last sync. On failure the
+     * pages already applied stay applied and the next sync resumes after them.
+     */
+    public Result sync() throws IOException {
+        Result result = new Result();
+        try {
+            String client = dbHelper.getSyncState(CLIENT_ID);
+            pull(client, result);
+            push(client, result);
+            return result;
+        } finally {
+            if (!result.changedIds.isEmpty()) announce(result);
+        }
+    }
+
+    private void pull(String client, Result result) throws IOException {
+        String checkpoint = dbHelper.getSyncState(PULL_CHECKPOINT);
+        boolean more;
+        do {
+            String query = "?limit=" + PAGE_SIZE + "&client=" + encode(client) +
+                    (checkpoint == null ? "" : "&since=" + encode(checkpoint));
+            HttpURLConnection connection = open("GET", query);
+            List<Change> changes = new ArrayList<>();
+            String next = checkpoint;
+            more = false;
+            try (JsonReader json = readResponse(connection)) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    String key = json.nextName();
+                    if (key.equals("changes")) {
+                        readChanges(json, changes);
+                    } else if (key.equals("next")) {
+                        next = json.nextString();
+                    } else if (key.equals("more")) {
+                        more = json.nextBoolean();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            } finally {
+                connection.disconnect();
+            }
+            if (next == null) throw new IOException("Registrar sent no checkpoint");
+            if (!changes.isEmpty() || !next.equals(checkpoint)) {
+                String pageCheckpoint = next;
+                onWriter(() -> dbHelper.applyRemoteChanges(changes, PULL_CHECKPOINT, pageCheckpoint, result));
+            }
+            checkpoint = next;
+        } while (more);
+    }
+
+    private void push(String client, Result result) throws IOException {
+        long afterVersion = 0;
+        while (true) {
+            List<Change> pending = dbHelper.getPendingChanges(afterVersion, PAGE_SIZE);
+            if (pending.isEmpty()) return;
+            Map<String, Change> sent = new HashMap<>();
+            for (Change change : pending) sent.put(change.id, change);
+
+            HttpURLConnection connection = open("POST", "?client=" + encode(client));
+            List<Change> accepted = new ArrayList<>();
+            List<Change> rejected = new ArrayList<>();
+            try {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setRequestProperty("Content-Encoding", "gzip");
+                connection.setChunkedStreamingMode(0);
+                try (JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(connection.getOutputStream(), BUFFER_SIZE), StandardCharsets.UTF_8)))) {
+                    json.beginObject();
+                    json.name("changes").beginArray();
+                    for (Change change : pending) writeChange(json, change);
+                    json.endArray();
+                    json.endObject();
+                }
+                try (JsonReader json = readResponse(connection)) {
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        String key = json.nextName();
+                        if (key.equals("accepted")) {
+                            readAccepted(json, sent, accepted);
+                        } else if (key.equals("rejected")) {
+                            readChanges(json, rejected);
+                        } else {
+                            json.skipValue();
+                        }
+                    }
+                    json.endObject();
+                }
+            } finally {
+                connection.disconnect();
+            }
+            onWriter(() -> dbHelper.applyPushResult(accepted, rejected, result));
+
+            if (pending.size() < PAGE_SIZE) return;
+            afterVersion = pending.get(pending.size() - 1).localVersion;
+        }
+    }
+
+    // --- Pulled rows bypassed the repository: drop its copies and tell the screens once ---
+    private void announce(Result result) {
+        for (int id : result.changedIds) repository.forget(id);
+        repository.saveStartupSnapshot();
+        context.getContentResolver().notifyChange(StudentContract.CONTENT_URI, null);
+    }
+
+    // Runs on the writer thread, which every write that adjusts the in-memory counts goes through
+    private void onWriter(Runnable write) throws IOException {
+        try {
+            repository.submitWrite(() -> {
+                write.run();
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Sync write failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sync interrupted", e);
+        }
+    }
+
+    // ------------------------------
+    // HTTP
+    // ------------------------------
+    private HttpURLConnection open(String method, String query) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(registrar + "/changes" + query).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        // Asked for explicitly, so the response has to be unzipped here
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return connection;
+    }
+
+    private static JsonReader readResponse(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Registrar answered " + code + " " + connection.getResponseMessage());
+        }
+        InputStream in = new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE);
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    // ------------------------------
+    // JSON
+    // ------------------------------
+    private static void writeChange(JsonWriter json, Change change) throws IOException {
+        json.beginObject();
+        json.name("id").value(change.id);
+        json.name("name").value(change.name);
+        json.name("course").value(change.course);
+        if (isPortable(change.image)) json.name("image").value(change.image);
+        json.name("deleted").value(change.deleted);
+        json.name("updatedAt").value(change.updatedAt);
+        json.name("version").value(change.version);
+        json.endObject();
+    }
+
+    private static void readChanges(JsonReader json, List<Change> into) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            String id = null;
+            String name = null;
+            String course = null;
+            String image = null;
+            boolean deleted = false;
+            long updatedAt = 0;
+            long version = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                } else if (key.equals("id")) {
+                    id = json.nextString();
+                } else if (key.equals("name")) {
+                    name = json.nextString();
+                } else if (key.equals("course")) {
+                    course = json.nextString();
+                } else if (key.equals("image")) {
+                    image = json.nextString();
+                    if (!isPortable(image)) image = null;  // another device's file: unusable here
+                } else if (key.equals("deleted")) {
+                    deleted = json.nextBoolean();
+                } else if (key.equals("updatedAt")) {
+                    updatedAt = json.nextLong();
+                } else if (key.equals("version")) {
+                    version = json.nextLong();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            if (id == null) throw new IOException("Registrar sent a change without an id");
+            into.add(new Change(id, name, course, image, deleted, updatedAt, version, 0));
+        }
+        json.endArray();
+    }
+
+    private static void readAccepted(JsonReader json, Map<String, Change> sent, List<Change> into)
+            throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            String id = null;
+            long version = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if (key.equals("id")) {
+                    id = json.nextString();
+                } else if (key.equals("version")) {
+                    version = json.nextLong();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            Change change = sent.get(id);
+            if (change != null) into.add(change.withVersion(version));
+        }
+        json.endArray();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Student photo thumbnails keyed by image URI and target size. A byte-budgeted
+ * in-memory LRU sits in front of pre-scaled JPEGs in app-private cache
+ * storage, so a row that was shown before never goes back to the content
+ * resolver or decodes the full photo again.
+ */
+public class ThumbnailCache {
+
+    private static final String TAG = "ThumbnailCache";
+    private static final String DIR = "thumbnails";
+    private static final long DISK_BUDGET_BYTES = 32L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+
+    private static volatile ThumbnailCache instance;
+
+    public static ThumbnailCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (ThumbnailCache.class) {
+                if (instance == null) {
+                    instance = new ThumbnailCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final BitmapDecoder decoder;
+    private final File dir;
+    private final LruCache<String, Bitmap> memory;
+    private final Object diskLock = new Object();
+    private long diskBytes = -1;  // computed on first write
+
+    private ThumbnailCache(Context context) {
+        this.decoder = BitmapDecoder.getInstance(context);
+        this.dir = new File(context.getCacheDir(), DIR);
+        // An eighth of the heap, counted in bytes
+        int budget = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+        this.memory = new LruCache<String, Bitmap>(budget) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    @Nullable
+    public Bitmap getFromMemory(String uri, int size) {
+        return memory.get(memoryKey(uri, size));
+    }
+
+    /**
+     * Memory, then disk, then the original image. Does I/O on a miss.
+     */
+    @Nullable
+    public Bitmap get(String uri, int size) {
+        String key = memoryKey(uri, size);
+        Bitmap bitmap = memory.get(key);
+        if (bitmap != null) return bitmap;
+
+        File file = diskFile(uri, size);
+        if (file.exists()) {
+            // Thumbnails are stored as JPEG, so there is no alpha to keep
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());  // LRU order on disk
+                memory.put(key, bitmap);
+                return bitmap;
+            }
+        }
+
+        bitmap = decoder.decode(Uri.parse(uri), size);
+        if (bitmap != null) {
+            memory.put(key, bitmap);
+            writeToDisk(file, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Drops every cached size of this image, e.g. after a student's photo changed.
+     */
+    public void invalidate(@Nullable String uri) {
+        if (uri == null || uri.isEmpty()) return;
+        String prefix = uri + "@";
+        for (String key : memory.snapshot().keySet()) {
+            if (key.startsWith(prefix)) memory.remove(key);
+        }
+
+        String filePrefix = hash(uri) + "_";
+        synchronized (diskLock) {
+            File[] files = dir.listFiles((d, name) -> name.startsWith(filePrefix));
+            if (files == null) return;
+            for (File file : files) {
+                long length = file.length();
+                if (file.delete() && diskBytes >= 0) diskBytes -= length;
+            }
+        }
+    }
+
+    public void clearMemory() {
+        memory.evictAll();
+    }
+
+    private void writeToDisk(File file, Bitmap bitmap) {
+        synchronized (diskLock) {
+            if (!dir.exists() && !dir.mkdirs()) return;
+            File tmp = new File(dir, file.getName() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write thumbnail", e);
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+            if (diskBytes < 0) diskBytes = directorySize();
+            else diskBytes += file.length();
+            if (diskBytes > DISK_BUDGET_BYTES) trimDisk();
+        }
+    }
+
+    // --- Deletes least recently used files until under 3/4 of the budget ---
+    private void trimDisk() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (diskBytes <= DISK_BUDGET_BYTES * 3 / 4) break;
+            long length = file.length();
+            if (file.delete()) diskBytes -= length;
+        }
+    }
+
+    private long directorySize() {
+        long total = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) total += file.length();
+        }
+        return total;
+    }
+
+    private File diskFile(String uri, int size) {
+        return new File(dir, hash(uri) + "_" + size + ".jpg");
+    }
+
+    private static String memoryKey(String uri, int size) {
+        return uri + "@" + size;
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.studentdatabase;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typo-tolerant lookup over live students. Every word of every name is
+ * split into padded trigrams ("john" -> "$jo", "joh", "ohn", "hn$"), and a
+ * posting list per trigram holds the students that have it. A query counts
+ * shared trigrams to find candidates, then ranks only those with a
+ * bit-parallel edit distance (Myers/Hyyro), so a lookup costs the length of
+ * a few posting lists rather than a distance per student.
+ * <p>
+ * One typo in a short word can leave it no trigram in common with the name
+ * ("jhon" and "john"). Padded bigrams are indexed too, and when trigrams
+ * find fewer matches than asked for, a second pass finds candidates by
+ * shared bigrams instead. Their lists are longer, so that pass is slower,
+ * but it only runs when the first one comes up short.
+ * <p>
+ * Each query word must come within a small edit distance of some word of
+ * the name or course; the last word may also match the start of one, as it
+ * is usually still being typed. Courses are scored but not indexed: a course
+ * trigram would list most of the school.
+ * <p>
+ * Loaded once and then kept current by {@link DBHelper}, like
+ * {@link CourseFacets}; all methods are thread-safe.
+ */
+final class TrigramIndex {
+
+    static final int MAX_CANDIDATES = 1000;  // scored per query, best trigram overlap first
+    private static final int MAX_PATTERN = 64;  // one machine word of bit-parallel state
+
+    private boolean loaded = false;
+    private int[] ids = new int[0];            // by slot; NO_ID when free
+    private String[] keys = new String[0];     // SearchText form of name + course, by slot
+    private int[] nameEnds = new int[0];       // end of the name part of each key
+    private int slots = 0;
+    private final List<Integer> freeSlots = new ArrayList<>();
+    private final Map<Integer, Integer> slotOf = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private long postingCount = 0;
+    private long stalePostings = 0;  // entries left behind by removed or changed rows
+    private int[] overlap = new int[0];  // per-slot scratch for search, all zero between calls
+
+    private static final int NO_ID = -1;
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Empties the index and starts accepting rows; the caller then adds every
+     * live student while holding this object's lock.
+     */
+    synchronized void beginLoad() {
+        loaded = true;
+        ids = new int[1024];
+        keys = new String[1024];
+        nameEnds = new int[1024];
+        slots = 0;
+        freeSlots.clear();
+        slotOf.clear();
+        postings.clear();
+        postingCount = 0;
+        stalePostings = 0;
+    }
+
+    // Forget everything, e.g. after a rollback it can't be adjusted back from
+    synchronized void unload() {
+        loaded = false;
+        ids = new int[0];
+        keys = new String[0];
+        nameEnds = new int[0];
+        slots = 0;
+        freeSlots.clear();
+        slotOf.clear();
+        postings.clear();
+        overlap = new int[0];
+    }
+
+    /**
+     * Adds or replaces a student. Ignored until loaded.
+     */
+    synchronized void put(int id, @Nullable String name, @Nullable String course) {
+        if (!loaded) return;
+        remove(id);
+        String nameKey = SearchText.normalize(name);
+        int slot = freeSlots.isEmpty() ? slots++ : freeSlots.remove(freeSlots.size() - 1);
+        if (slot == ids.length) {
+            int capacity = Math.max(1024, slot * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+        }
+        ids[slot] = id;
+        keys[slot] = nameKey + SearchText.normalize(course);
+        nameEnds[slot] = nameKey.length();
+        slotOf.put(id, slot);
+        index(slot);
+    }
+
+    synchronized void remove(int id) {
+        if (!loaded) return;
+        Integer slot = slotOf.remove(id);
+        if (slot == null) return;
+        // Its postings stay until the next compaction; a reused slot is
+        // re-scored against its new key, so they only add candidates
+        stalePostings += gramCount(keys[slot], nameEnds[slot]);
+        ids[slot] = NO_ID;
+        keys[slot] = null;
+        freeSlots.add(slot);
+        if (stalePostings > postingCount / 2) compact();
+    }
+
+    /**
+     * Ids of up to {@code limit} students matching {@code query} with typos,
+     * best first: lowest total edit distance, then most shared trigrams.
+     */
+    synchronized int[] search(String query, int limit) {
+        String[] tokens = SearchText.tokens(query);
+        if (!loaded || tokens.length == 0 || slots == 0) return new int[0];
+
+        Pattern[] patterns = new Pattern[tokens.length];
+        for (int t = 0; t < tokens.length; t++) patterns[t] = new Pattern(tokens[t].substring(1));
+        Map<Integer, Long> ranked = new HashMap<>();
+        rank(tokens, patterns, 3, ranked);
+        if (ranked.size() < limit) rank(tokens, patterns, 2, ranked);
+
+        long[] sorted = new long[ranked.size()];
+        int count = 0;
+        for (long rank : ranked.values()) sorted[count++] = rank;
+        Arrays.sort(sorted);
+        int[] result = new int[Math.min(limit, count)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) sorted[i];  // the id is in the low bits
+        }
+        return result;
+    }
+
+    // --- Scores the students sharing enough n-grams with the query, by id; those already scored keep theirs ---
+    private void rank(String[] tokens, Pattern[] patterns, int n, Map<Integer, Long> ranked) {
+        // --- Candidates: shared n-grams, counted per slot ---
+        if (overlap.length < slots) overlap = new int[ids.length];
+        int[] touched = new int[Math.min(slots, 4096)];
+        int touchedCount = 0;
+        int threshold = 0;
+        for (int t = 0; t < tokens.length; t++) {
+            String word = tokens[t].substring(1);
+            boolean last = t == tokens.length - 1;
+            int grams = 0;
+            for (int i = -1; i < word.length() - n + (last ? 1 : 2); i++) {
+                grams++;
+                Postings list = postings.get(gram(word, i, n));
+                if (list == null) continue;
+                for (int p = 0; p < list.size; p++) {
+                    int slot = list.slots[p];
+                    if (slot >= slots) continue;
+                    if (overlap[slot]++ == 0) {
+                        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = slot;
+                    }
+                }
+            }
+            // A word within k edits keeps all but about 3k of its n-grams; course
+            // words share none with names, so the best word sets the bar
+            threshold = Math.max(threshold, grams - 3 * maxDistance(word.length()));
+        }
+        threshold = Math.max(1, threshold);
+
+        // Best overlap first, bucketed since overlaps are small
+        int maxOverlap = 0;
+        for (int i = 0; i < touchedCount; i++) maxOverlap = Math.max(maxOverlap, overlap[touched[i]]);
+        int[] candidates = new int[Math.min(touchedCount, MAX_CANDIDATES)];
+        int candidateCount = 0;
+        for (int level = maxOverlap; level >= threshold && candidateCount < candidates.length; level--) {
+            for (int i = 0; i < touchedCount && candidateCount < candidates.length; i++) {
+                int slot = touched[i];
+                if (overlap[slot] == level && ids[slot] != NO_ID && !ranked.containsKey(ids[slot])) {
+                    candidates[candidateCount++] = slot;
+                }
+            }
+        }
+
+        // --- Ranking: bounded edit distance per query word ---
+        for (int c = 0; c < candidateCount; c++) {
+            int slot = candidates[c];
+            int total = 0;
+            for (int t = 0; t < tokens.length && total >= 0; t++) {
+                int best = patterns[t].bestDistance(keys[slot], t == tokens.length - 1);
+                total = best <= maxDistance(patterns[t].length) ? total + best : -1;
+            }
+            if (total < 0) continue;
+            // distance, then overlap (descending), then id, packed to sort as one long
+            ranked.put(ids[slot], ((long) total << 48)
+                    | ((long) (0xFFFF - Math.min(0xFFFF, overlap[slot])) << 32) | ids[slot]);
+        }
+
+        for (int i = 0; i < touchedCount; i++) overlap[touched[i]] = 0;
+    }
+
+    // Edits tolerated for a query word of this length
+    static int maxDistance(int length) {
+        return length <= 4 ? 1 : length <= 8 ? 2 : 3;
+    }
+
+    private void index(int slot) {
+        String key = keys[slot];
+        int end = nameEnds[slot];
+        int wordStart = -1;
+        for (int i = 0; i <= end; i++) {
+            if (i == end || key.charAt(i) == ' ') {
+                if (wordStart >= 0) {
+                    String word = key.substring(wordStart, i);
+                    for (int g = -1; g < word.length(); g++) {
+                        if (g < word.length() - 1) add(gram(word, g, 3), slot);
+                        add(gram(word, g, 2), slot);
+                    }
+                }
+                wordStart = i + 1;
+            }
+        }
+    }
+
+    private void add(long gram, int slot) {
+        postings.computeIfAbsent(gram, k -> new Postings()).add(slot);
+        postingCount++;
+    }
+
+    private static int gramCount(String key, int nameEnd) {
+        int count = 0;
+        for (int i = 0; i < nameEnd; i++) {
+            // A word of n letters has n padded trigrams and n + 1 padded bigrams
+            if (key.charAt(i) != ' ') count += 2;
+            if (key.charAt(i) == ' ' && i + 1 < nameEnd) count++;
+        }
+        return count;
+    }
+
+    // --- Drops stale postings by re-indexing the live slots ---
+    private void compact() {
+        postings.clear();
+        postingCount = 0;
+        stalePostings = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (ids[slot] != NO_ID) index(slot);
+        }
+    }
+
+    // Padded n-gram starting at i (-1 includes the leading '$'), packed into a long.
+    // Bigrams fit in 32 bits and trigrams don't, so both share one posting map.
+    private static long gram(String word, int i, int n) {
+        long packed = 0;
+        for (int j = i; j < i + n; j++) {
+            char c = j < 0 || j >= word.length() ? '$' : word.charAt(j);
+            packed = (packed << 16) | c;
+        }
+        return packed;
+    }
+
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size = 0;
+
+        void add(int slot) {
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+    }
+
+    /**
+     * Edit distance (insertions, deletions, substitutions and adjacent
+     * transpositions) from one query word to the words of a key, with one
+     * bit of state per pattern character: Hyyro's extension of Myers'
+     * bit-parallel algorithm.
+     */
+    static final class Pattern {
+        final int length;
+        private final char[] chars;  // distinct pattern characters
+        private final long[] masks;  // positions of each in the pattern
+        private final long lastBit;
+
+        Pattern(String word) {
+            String pattern = word.length() > MAX_PATTERN ? word.substring(0, MAX_PATTERN) : word;
+            length = pattern.length();
+            char[] distinct = new char[length];
+            long[] bits = new long[length];
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                char c = pattern.charAt(i);
+                int k = 0;
+                while (k < count && distinct[k] != c) k++;
+                if (k == count) distinct[count++] = c;
+                bits[k] |= 1L << i;
+            }
+            chars = Arrays.copyOf(distinct, count);
+            masks = Arrays.copyOf(bits, count);
+            lastBit = length == 0 ? 0 : 1L << (length - 1);
+        }
+
+        /**
+         * Smallest distance to any space-separated word of {@code key}, or to
+         * any prefix of one when {@code prefix} is set.
+         */
+        int bestDistance(String key, boolean prefix) {
+            int best = Integer.MAX_VALUE;
+            int start = -1;
+            for (int i = 0; i <= key.length(); i++) {
+                if (i == key.length() || key.charAt(i) == ' ') {
+                    if (start >= 0 && i > start) best = Math.min(best, distance(key, start, i, prefix));
+                    start = i + 1;
+                }
+            }
+            return best;
+        }
+
+        int distance(String text, int from, int to, boolean prefix) {
+            if (length == 0) return prefix ? 0 : to - from;
+            long vp = lastBit | (lastBit - 1);
+            long vn = 0;
+            long d0 = 0;
+            long previousEq = 0;
+            int score = length;
+            int best = prefix ? score : Integer.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                long eq = maskOf(text.charAt(i));
+                // Adjacent transposition ("jonh" -> "john") costs one edit, not two
+                long tr = (((~d0) & eq) << 1) & previousEq;
+                d0 = (((eq & vp) + vp) ^ vp) | eq | vn | tr;
+                long hp = vn | ~(d0 | vp);
+                long hn = d0 & vp;
+                if ((hp & lastBit) != 0) {
+                    score++;
+                } else if ((hn & lastBit) != 0) {
+                    score--;
+                }
+                hp = (hp << 1) | 1;  // the top row grows by one per text character
+                hn <<= 1;
+                vp = hn | ~(d0 | hp);
+                vn = d0 & hp;
+                previousEq = eq;
+                if (prefix) best = Math.min(best, score);
+            }
+            return prefix ? best : score;
+        }
+
+        private long maskOf(char c) {
+            for (int k = 0; k < chars.length; k++) {
+                if (chars[k] == c) return masks[k];
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.studentdatabase;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The CSV record parser and header check behind {@link CsvStudentImporter}
+ * and CSV restores.
+ */
+public class CsvStudentImporterTest {
+
+    @Test
+    public void plainRecords() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("Ana Cruz", "BSCS", "content://photos/1"),
+                Arrays.asList("Mark Reyes", "BSIT")
+        ), records("Ana Cruz,BSCS,content://photos/1\nMark Reyes,BSIT\n"));
+    }
+
+    @Test
+    public void quotedFieldsHoldCommasQuotesAndLineBreaks() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("Cruz, Ana", "BSCS"),
+                Arrays.asList("Ana \"Annie\" Cruz", "BSIT"),
+                Arrays.asList("Ana\nCruz", "BSN")
+        ), records("\"Cruz, Ana\",BSCS\n\"Ana \"\"Annie\"\" Cruz\",BSIT\n\"Ana\nCruz\",BSN\n"));
+    }
+
+    @Test
+    public void crlfEndsRecordsButNotQuotedFields() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("Ana Cruz", "BSCS"),
+                Arrays.asList("Ana\r\nCruz", "BSIT")
+        ), records("Ana Cruz,BSCS\r\n\"Ana\r\nCruz\",BSIT\r\n"));
+    }
+
+    @Test
+    public void emptyFieldsAreKept() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("Ana Cruz", "", ""),
+                Arrays.asList("", "BSCS")
+        ), records("Ana Cruz,,\n,BSCS"));
+    }
+
+    @Test
+    public void blankAndTrailingEmptyLinesAreSkipped() throws IOException {
+        assertEquals(Arrays.asList(
+                Arrays.asList("Ana Cruz", "BSCS"),
+                Arrays.asList("Mark Reyes", "BSIT")
+        ), records("\nAna Cruz,BSCS\n\r\n\nMark Reyes,BSIT\r\n\r\n"));
+        assertNull(CsvStudentImporter.readRecord(reader("\r\n\n")));
+    }
+
+    @Test
+    public void headerIsSkipped() {
+        assertEquals(Arrays.asList("Ana Cruz"), names("name,course,image\r\nAna Cruz,BSCS,\r\n"));
+        assertEquals(Arrays.asList("Ana Cruz"), names(" Name , Course\nAna Cruz,BSCS\n"));
+    }
+
+    @Test
+    public void studentCalledNameIsNotAHeader() {
+        assertEquals(Arrays.asList("Name", "Ana Cruz"), names("Name,BSCS\nAna Cruz,BSIT\n"));
+        assertEquals(Arrays.asList("name"), names("name\n"));
+    }
+
+    @Test
+    public void fieldsAreTrimmed() {
+        CsvStudentImporter.RowIterator rows = new CsvStudentImporter.RowIterator(reader(" Ana Cruz , BSCS ,\n"));
+        Student student = rows.next();
+        assertEquals("Ana Cruz", student.getName());
+        assertEquals("BSCS", student.getCourse());
+        assertEquals("", student.getImage());
+    }
+
+    private static List<List<String>> records(String csv) throws IOException {
+        BufferedReader reader = reader(csv);
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = CsvStudentImporter.readRecord(reader)) != null) records.add(record);
+        return records;
+    }
+
+    private static List<String> names(String csv) {
+        List<String> names = new ArrayList<>();
+        CsvStudentImporter.RowIterator rows = new CsvStudentImporter.RowIterator(reader(csv));
+        while (rows.hasNext()) names.add(rows.next().getName());
+        return names;
+    }
+
+    private static BufferedReader reader(String csv) {
+        return new BufferedReader(new StringReader(csv));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Opens a database left by the oldest supported schema at the current
+ * version, so every step in {@link DBHelper}'s migrations runs in order
+ * on real rows.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DBHelperMigrationTest {
+
+    private static final String[] NAMES = {"Ana Cruz", "José Peñaflor", "Mark Reyes", "Maria Santos"};
+    private static final String[] COURSES = {"BSCS", "BSIT", null, "BSCS"};
+
+    private Context context;
+    private DBHelper db;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DBHelper.DATABASE);
+
+        // The students table exactly as it shipped at BASE_VERSION
+        SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DBHelper.DATABASE), null);
+        old.execSQL("CREATE TABLE students (id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "name VARCHAR(25), course VARCHAR(10), image VARCHAR(50))");
+        for (int i = 0; i < NAMES.length; i++) {
+            old.execSQL("INSERT INTO students (name, course, image) VALUES (?, ?, ?)",
+                    new Object[]{NAMES[i], COURSES[i], "content://media/" + i});
+        }
+        old.execSQL("INSERT INTO students (name, course) VALUES ('Gone Student', 'BSN')");
+        old.execSQL("DELETE FROM students WHERE name = 'Gone Student'");  // leaves a gap in the ids
+        old.execSQL("INSERT INTO students (name, course) VALUES ('Late Entry', 'BSN')");
+        old.setVersion(DBHelper.BASE_VERSION);
+        old.close();
+
+        db = DBHelper.getInstance(context);
+    }
+
+    @After
+    public void tearDown() {
+        DBHelper.closeInstance();
+        context.deleteDatabase(DBHelper.DATABASE);
+    }
+
+    @Test
+    public void rowsSurviveInTheirOrder() {
+        assertEquals(DBHelper.VERSION, db.getReadableDatabase().getVersion());
+
+        List<Student> students = db.getAllStudents();
+        List<String> names = new ArrayList<>();
+        for (Student student : students) names.add(student.getName());
+        List<String> expected = new ArrayList<>(Arrays.asList(NAMES));
+        expected.add("Late Entry");
+        assertEquals(expected, names);
+
+        // Step 15 keys rows in id order, SORT_GAP apart
+        for (Student student : students) {
+            assertEquals(student.getId() * DBHelper.SORT_GAP, student.getSortKey());
+        }
+        assertEquals("content://media/1", students.get(1).getImage());
+        assertEquals(Integer.valueOf(2), db.getCourseCounts().get("BSCS"));
+    }
+
+    @Test
+    public void searchIndexCoversMigratedRows() {
+        assertEquals(1, db.countSearchResults("cruz bs"));
+        assertEquals(2, db.countSearchResults("bscs"));
+        // Step 19 folds accents both ways
+        assertEquals(Arrays.asList("José Peñaflor"), names(db.searchStudents("jose penaflor", StudentPage.FIRST_KEY, 10)));
+        assertEquals(Arrays.asList("José Peñaflor"), names(db.searchStudents("JOSÉ", StudentPage.FIRST_KEY, 10)));
+
+        // The triggers keep the rebuilt index current
+        Student mark = db.getAllStudents().get(2);
+        mark.setName("Marco Reyes");
+        db.updateStudent(mark);
+        assertEquals(0, db.countSearchResults("mark"));
+        assertEquals(1, db.countSearchResults("marco"));
+        db.deleteStudent(mark.getId());
+        assertEquals(0, db.countSearchResults("marco"));
+    }
+
+    @Test
+    public void everyRowIsPendingForTheFirstSync() {
+        Set<String> remoteIds = new HashSet<>();
+        Cursor cursor = db.getReadableDatabase().rawQuery(
+                "SELECT remote_id, version, dirty, deleted FROM students", null);
+        while (cursor.moveToNext()) {
+            remoteIds.add(cursor.getString(0));
+            assertTrue(cursor.getLong(1) > 0);
+            assertEquals(1, cursor.getInt(2));
+            assertEquals(0, cursor.getInt(3));
+        }
+        assertEquals(NAMES.length + 1, cursor.getCount());
+        cursor.close();
+        assertEquals(NAMES.length + 1, remoteIds.size());
+    }
+
+    @Test
+    public void indexesMatchAFreshInstall() {
+        Set<String> upgraded = schemaObjects();
+        assertTrue(upgraded.containsAll(Arrays.asList(
+                "students_name_nocase", "students_sort", "students_live_sort", "students_tombstones",
+                "students_live_course", "students_remote_id", "students_version", "students_dirty",
+                "students_fts", "students_fts_ai", "students_fts_au", "students_fts_bu", "students_fts_bd",
+                DBHelper.SYNC_STATE)));
+        assertFalse(upgraded.contains("students_course"));  // dropped in step 17
+
+        DBHelper.closeInstance();
+        context.deleteDatabase(DBHelper.DATABASE);
+        db = DBHelper.getInstance(context);
+        assertEquals(schemaObjects(), upgraded);
+    }
+
+    private Set<String> schemaObjects() {
+        Set<String> names = new HashSet<>();
+        Cursor cursor = db.getReadableDatabase().rawQuery(
+                "SELECT name FROM sqlite_master WHERE name NOT LIKE 'sqlite_%'", null);
+        while (cursor.moveToNext()) names.add(cursor.getString(0));
+        cursor.close();
+        return names;
+    }
+
+    private static List<String> names(StudentPage page) {
+        List<String> names = new ArrayList<>();
+        for (Student student : page.getRows()) names.add(student.getName());
+        return names;
+    }
+}
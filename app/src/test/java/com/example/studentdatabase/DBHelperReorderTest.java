@@ -0,0 +1,100 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drags rows across tombstones, which keep their sort keys under the unique
+ * index until purged, so a new key must not land on one of theirs.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DBHelperReorderTest {
+
+    private Context context;
+    private DBHelper db;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DBHelper.DATABASE);
+        db = DBHelper.getInstance(context);
+    }
+
+    @After
+    public void tearDown() {
+        DBHelper.closeInstance();
+        context.deleteDatabase(DBHelper.DATABASE);
+    }
+
+    @Test
+    public void moveBetweenNeighboursAcrossTombstone() {
+        int a = add("Ana"), b = add("Ben"), c = add("Cora"), d = add("Dan");
+        db.deleteStudent(b);
+
+        // The midpoint of Ana and Cora is Ben's key
+        assertTrue(db.moveStudent(d, a, c));
+        assertEquals(Arrays.asList("Ana", "Dan", "Cora"), names());
+
+        db.restoreStudent(b);
+        assertEquals(4, names().size());
+    }
+
+    @Test
+    public void moveToEndAcrossTombstone() {
+        int a = add("Ana"), b = add("Ben"), c = add("Cora");
+        db.deleteStudent(c);
+
+        assertTrue(db.moveStudent(a, b, DBHelper.NO_NEIGHBOUR));
+        assertEquals(Arrays.asList("Ben", "Ana"), names());
+    }
+
+    @Test
+    public void moveToFrontAcrossTombstone() {
+        int a = add("Ana"), b = add("Ben"), c = add("Cora");
+        db.deleteStudent(a);
+
+        assertTrue(db.moveStudent(c, DBHelper.NO_NEIGHBOUR, b));
+        assertEquals(Arrays.asList("Cora", "Ben"), names());
+    }
+
+    @Test
+    public void exhaustedGapIsRespacedAroundTombstones() {
+        int a = add("Ana"), b = add("Ben"), c = add("Cora"), d = add("Dan"), e = add("Eve");
+        db.deleteStudent(c);
+
+        // Halving the gap above Ana until it runs out forces a respace mid-drag
+        for (int i = 0; i < 40; i++) {
+            int moved = i % 2 == 0 ? d : e;
+            assertTrue(db.moveStudent(moved, a, b));
+        }
+        assertEquals(Arrays.asList("Ana", "Eve", "Dan", "Ben"), names());
+
+        db.restoreStudent(c);
+        assertEquals(Arrays.asList("Ana", "Eve", "Dan", "Ben", "Cora"), names());
+    }
+
+    private int add(String name) {
+        return (int) db.addStudent(new Student(name, "BSCS", null));
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (Student student : db.getAllStudents()) names.add(student.getName());
+        return names;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Times DBHelper's main operations against a synthetic roster and writes the
+ * results as JSON, so runs can be compared for regressions. Skipped unless a
+ * row count is given: ./gradlew :app:testDebugUnitTest -PdbBenchmarkRows=100000
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DBHelperTimingTest {
+
+    private static final int ROWS = Integer.getInteger("dbBenchmark.rows", 0);
+    private static final int MAX_SINGLE_OPS = 10_000;  // lookups and deletes
+    private static final int PURGE_BATCH = 200;
+
+    private Context context;
+    private DBHelper db;
+    private final List<String> results = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        assumeTrue("Set -PdbBenchmarkRows to run the DB timing harness", ROWS > 0);
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DBHelper.DATABASE);
+        db = DBHelper.getInstance(context);
+    }
+
+    @After
+    public void tearDown() {
+        if (db == null) return;
+        DBHelper.closeInstance();
+        context.deleteDatabase(DBHelper.DATABASE);
+    }
+
+    @Test
+    public void timeCrudAtScale() throws Exception {
+        ImportResult imported = time("bulkInsert", ROWS, () ->
+                db.bulkInsert(SyntheticRoster.iterator(ROWS, SyntheticRoster.SEED),
+                        DBHelper.DEFAULT_BATCH_SIZE, null));
+        assertEquals(ROWS, imported.getInserted());
+
+        List<Student> all = time("fullScan", ROWS, db::getAllStudents);
+        assertEquals(ROWS, all.size());
+
+        int paged = time("pagedScan", ROWS, () -> {
+            int read = 0;
+            long key = StudentPage.FIRST_KEY;
+            StudentPage page;
+            do {
+                page = db.getStudentsAfter(key, StudentPager.PAGE_SIZE);
+                read += page.getRows().size();
+                key = page.getLastKey();
+            } while (page.getRows().size() == StudentPager.PAGE_SIZE);
+            return read;
+        });
+        assertEquals(ROWS, paged);
+
+        int singleOps = Math.min(ROWS, MAX_SINGLE_OPS);
+        int[] ids = new int[singleOps];
+        Random random = new Random(SyntheticRoster.SEED);
+        for (int i = 0; i < singleOps; i++) {
+            ids[i] = 1 + random.nextInt(ROWS);
+        }
+        int found = time("lookupById", singleOps, () -> {
+            int hits = 0;
+            for (int id : ids) {
+                if (db.getStudentById(id) != null) hits++;
+            }
+            return hits;
+        });
+        assertEquals(singleOps, found);
+
+        // Deletes as the repository applies them: tombstones in one transaction, then batched purges
+        List<Integer> deleted = new ArrayList<>(singleOps);
+        for (int id = 1; id <= singleOps; id++) {
+            deleted.add(id);
+        }
+        time("deleteTombstone", singleOps, () -> {
+            SQLiteDatabase sql = db.getWritableDatabase();
+            sql.beginTransactionNonExclusive();
+            try {
+                for (int id : deleted) {
+                    db.deleteStudent(id);
+                }
+                sql.setTransactionSuccessful();
+            } finally {
+                sql.endTransaction();
+            }
+            return null;
+        });
+        time("purge", singleOps, () -> {
+            for (int from = 0; from < deleted.size(); from += PURGE_BATCH) {
+                db.purgeStudents(deleted.subList(from, Math.min(deleted.size(), from + PURGE_BATCH)));
+            }
+            return null;
+        });
+        assertEquals(ROWS - singleOps, db.countStudents());
+
+        writeReport();
+    }
+
+    private <T> T time(String name, int ops, Callable<T> body) throws Exception {
+        long start = System.nanoTime();
+        T result = body.call();
+        double millis = (System.nanoTime() - start) / 1e6;
+        results.add(String.format(Locale.ROOT,
+                "{\"name\":\"%s\",\"ops\":%d,\"millis\":%.3f,\"opsPerSecond\":%.1f}",
+                name, ops, millis, ops / (millis / 1000)));
+        return result;
+    }
+
+    private void writeReport() throws IOException {
+        String json = String.format(Locale.ROOT, "{\"rows\":%d,\"sdk\":%d,\"results\":[%s]}%n",
+                ROWS, android.os.Build.VERSION.SDK_INT, String.join(",", results));
+        System.out.print(json);
+
+        String out = System.getProperty("dbBenchmark.out");
+        if (out == null) return;
+        File file = new File(out);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(json);
+        }
+    }
+}
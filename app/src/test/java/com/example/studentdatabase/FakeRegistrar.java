@@ -0,0 +1,344 @@
+package com.example.studentdatabase;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in-process stand-in for the registrar's change feed, speaking the
+ * protocol described in {@link StudentSync}. It keeps every row in memory,
+ * numbers changes with one global sequence and settles push conflicts by
+ * the same later-edit rule as the app. It also counts what went over the
+ * wire, so tests can check that a sync moves only what changed.
+ */
+final class FakeRegistrar implements Closeable {
+
+    static final String OTHER_CLIENT = "other-device";
+
+    static final class Row {
+        final String id;
+        String name;
+        String course;
+        String image;
+        boolean deleted;
+        long updatedAt;
+        long version;
+        String client;  // who made the last change
+
+        Row(String id) {
+            this.id = id;
+        }
+    }
+
+    private final HttpServer server;
+    private final Map<String, Row> rows = new HashMap<>();
+    private final TreeMap<Long, Row> byVersion = new TreeMap<>();
+    private long sequence = 0;
+
+    // --- Traffic, for assertions ---
+    int pullRequests = 0;
+    int pushRequests = 0;
+    int changesSent = 0;      // to the app, in pulls and rejections
+    int changesReceived = 0;  // from the app, in pushes
+    private int failAfter = -1;  // requests to answer before failing with a 503
+
+    FakeRegistrar() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/students/changes", exchange -> {
+            try {
+                handle(exchange);
+            } catch (RuntimeException e) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    URL url() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/students");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    synchronized void failAfter(int requests) {
+        failAfter = requests;
+    }
+
+    synchronized void resetCounts() {
+        pullRequests = 0;
+        pushRequests = 0;
+        changesSent = 0;
+        changesReceived = 0;
+    }
+
+    // --- Edits made by another device ---
+    synchronized Row put(String id, String name, String course, long updatedAt) {
+        Row current = rows.get(id);
+        return put(id, name, course, current == null ? null : current.image, updatedAt);
+    }
+
+    synchronized Row put(String id, String name, String course, String image, long updatedAt) {
+        Row row = rows.get(id);
+        if (row == null) {
+            row = new Row(id);
+            rows.put(id, row);
+        }
+        row.name = name;
+        row.course = course;
+        row.image = image;
+        row.deleted = false;
+        row.updatedAt = updatedAt;
+        commit(row, OTHER_CLIENT);
+        return row;
+    }
+
+    synchronized void delete(String id, long updatedAt) {
+        Row row = rows.get(id);
+        row.deleted = true;
+        row.updatedAt = updatedAt;
+        commit(row, OTHER_CLIENT);
+    }
+
+    synchronized Row row(String id) {
+        return rows.get(id);
+    }
+
+    synchronized List<Row> liveRows() {
+        List<Row> live = new ArrayList<>();
+        for (Row row : rows.values()) {
+            if (!row.deleted) live.add(row);
+        }
+        return live;
+    }
+
+    private void commit(Row row, String client) {
+        byVersion.remove(row.version);
+        row.version = ++sequence;
+        row.client = client;
+        byVersion.put(row.version, row);
+    }
+
+    // ------------------------------
+    // HTTP
+    // ------------------------------
+    private synchronized void handle(HttpExchange exchange) throws IOException {
+        if (failAfter == 0) {
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+        if (failAfter > 0) failAfter--;
+
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String client = query.get("client");
+        if (client == null) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+        if (exchange.getRequestMethod().equals("GET")) {
+            pullRequests++;
+            String since = query.get("since");
+            pull(exchange, client, since == null ? 0 : Long.parseLong(since),
+                    Integer.parseInt(query.get("limit")));
+        } else if (exchange.getRequestMethod().equals("POST")) {
+            if (!"gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                exchange.sendResponseHeaders(415, -1);
+                return;
+            }
+            pushRequests++;
+            push(exchange, client);
+        } else {
+            exchange.sendResponseHeaders(405, -1);
+        }
+    }
+
+    // Changes after the cursor, skipping the caller's own; the cursor moves past skipped ones too
+    private void pull(HttpExchange exchange, String client, long since, int limit) throws IOException {
+        List<Row> page = new ArrayList<>();
+        long next = since;
+        for (Row row : byVersion.tailMap(since, false).values()) {
+            if (page.size() == limit) break;
+            next = row.version;
+            if (!row.client.equals(client)) page.add(row);
+        }
+        boolean more = byVersion.higherKey(next) != null;
+        changesSent += page.size();
+
+        try (JsonWriter json = respond(exchange)) {
+            json.beginObject();
+            json.name("changes").beginArray();
+            for (Row row : page) writeRow(json, row);
+            json.endArray();
+            json.name("next").value(String.valueOf(next));
+            json.name("more").value(more);
+            json.endObject();
+        }
+    }
+
+    private void push(HttpExchange exchange, String client) throws IOException {
+        List<Row> accepted = new ArrayList<>();
+        List<Row> rejected = new ArrayList<>();
+        try (JsonReader json = new JsonReader(new InputStreamReader(
+                new GZIPInputStream(exchange.getRequestBody()), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!json.nextName().equals("changes")) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginArray();
+                while (json.hasNext()) {
+                    Row change = readRow(json);
+                    changesReceived++;
+                    Row current = rows.get(change.id);
+                    // Based on the latest version, or simply the later edit
+                    if (current == null || current.version == change.version
+                            || change.updatedAt > current.updatedAt) {
+                        if (current == null) {
+                            current = new Row(change.id);
+                            rows.put(change.id, current);
+                        }
+                        current.name = change.name;
+                        current.course = change.course;
+                        // A change without an image keeps the one the registrar has
+                        if (change.image != null) current.image = change.image;
+                        current.deleted = change.deleted;
+                        current.updatedAt = change.updatedAt;
+                        commit(current, client);
+                        accepted.add(current);
+                    } else {
+                        rejected.add(current);
+                    }
+                }
+                json.endArray();
+            }
+            json.endObject();
+        }
+        changesSent += rejected.size();
+
+        try (JsonWriter json = respond(exchange)) {
+            json.beginObject();
+            json.name("accepted").beginArray();
+            for (Row row : accepted) {
+                json.beginObject();
+                json.name("id").value(row.id);
+                json.name("version").value(row.version);
+                json.endObject();
+            }
+            json.endArray();
+            json.name("rejected").beginArray();
+            for (Row row : rejected) writeRow(json, row);
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    private static JsonWriter respond(HttpExchange exchange) throws IOException {
+        OutputStream out;
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            out = new GZIPOutputStream(exchange.getResponseBody());
+        } else {
+            exchange.sendResponseHeaders(200, 0);
+            out = exchange.getResponseBody();
+        }
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) continue;
+            params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    // ------------------------------
+    // JSON
+    // ------------------------------
+    private static void writeRow(JsonWriter json, Row row) throws IOException {
+        json.beginObject();
+        json.name("id").value(row.id);
+        json.name("name").value(row.name);
+        json.name("course").value(row.course);
+        json.name("image").value(row.image);
+        json.name("deleted").value(row.deleted);
+        json.name("updatedAt").value(row.updatedAt);
+        json.name("version").value(row.version);
+        json.endObject();
+    }
+
+    private static Row readRow(JsonReader json) throws IOException {
+        Row row = null;
+        String name = null;
+        String course = null;
+        String image = null;
+        boolean deleted = false;
+        long updatedAt = 0;
+        long version = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+            } else if (key.equals("id")) {
+                row = new Row(json.nextString());
+            } else if (key.equals("name")) {
+                name = json.nextString();
+            } else if (key.equals("course")) {
+                course = json.nextString();
+            } else if (key.equals("image")) {
+                image = json.nextString();
+            } else if (key.equals("deleted")) {
+                deleted = json.nextBoolean();
+            } else if (key.equals("updatedAt")) {
+                updatedAt = json.nextLong();
+            } else if (key.equals("version")) {
+                version = json.nextLong();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (row == null) throw new IOException("Change without an id");
+        row.name = name;
+        row.course = course;
+        row.image = image;
+        row.deleted = deleted;
+        row.updatedAt = updatedAt;
+        row.version = version;
+        return row;
+    }
+}
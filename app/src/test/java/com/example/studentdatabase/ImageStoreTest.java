@@ -0,0 +1,96 @@
+package com.example.studentdatabase;
+
+import android.graphics.Matrix;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that every EXIF orientation is turned upright before a photo is
+ * stored, since a wrong one would be kept for good under its content hash.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ImageStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Where the decoded unit vectors (1,0) and (0,1) must end up, by orientation tag
+    private static final float[][] UPRIGHT = {
+            null,
+            {1, 0, 0, 1},     // 1 normal
+            {-1, 0, 0, 1},    // 2 flip horizontal
+            {-1, 0, 0, -1},   // 3 rotate 180
+            {1, 0, 0, -1},    // 4 flip vertical
+            {0, 1, 1, 0},     // 5 transpose
+            {0, 1, -1, 0},    // 6 rotate 90
+            {0, -1, -1, 0},   // 7 transverse
+            {0, -1, 1, 0},    // 8 rotate 270
+    };
+
+    @Test
+    public void normalOrientationNeedsNoTransform() throws IOException {
+        assertNull(ImageStore.uprightMatrix(new ExifInterface(jpegWithOrientation(1))));
+    }
+
+    @Test
+    public void transposeIsMirroredAcrossTheDiagonal() throws IOException {
+        assertUpright(5);
+    }
+
+    @Test
+    public void transverseIsMirroredAcrossTheAntiDiagonal() throws IOException {
+        assertUpright(7);
+    }
+
+    @Test
+    public void everyOtherOrientationIsUpright() throws IOException {
+        for (int orientation : new int[]{2, 3, 4, 6, 8}) assertUpright(orientation);
+    }
+
+    private void assertUpright(int orientation) throws IOException {
+        Matrix matrix = ImageStore.uprightMatrix(new ExifInterface(jpegWithOrientation(orientation)));
+        float[] points = {1, 0, 0, 1};
+        // Vectors from the origin, so the translation createBitmap adds doesn't matter
+        float[] origin = {0, 0};
+        matrix.mapPoints(points);
+        matrix.mapPoints(origin);
+        for (int i = 0; i < points.length; i++) points[i] = Math.round(points[i] - origin[i % 2]);
+        assertArrayEquals("orientation " + orientation, UPRIGHT[orientation], points, 0.001f);
+    }
+
+    // --- The smallest JPEG ExifInterface reads: SOI, an APP1 with one IFD entry, EOI ---
+    private File jpegWithOrientation(int orientation) throws IOException {
+        byte[] bytes = {
+                (byte) 0xFF, (byte) 0xD8,
+                (byte) 0xFF, (byte) 0xE1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,     // big-endian TIFF, IFD0 at 8
+                0, 1,                            // one entry
+                0x01, 0x12, 0, 3, 0, 0, 0, 1,    // Orientation, SHORT, count 1
+                0, (byte) orientation, 0, 0,
+                0, 0, 0, 0,                      // no next IFD
+                (byte) 0xFF, (byte) 0xD9
+        };
+        File file = folder.newFile("orientation" + orientation + ".jpg");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SearchPipeline} narrows the previous results in memory when a
+ * query extends the last one. That must find exactly the rows a fresh FTS
+ * query would, accents included, or results change with how fast you type.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SearchNarrowingTest {
+
+    private static final int ROSTER = 600;
+
+    // Typed first, then extended
+    private static final String[][] EXTENSIONS = {
+            {"ma", "maria"},
+            {"jo", "josé"},
+            {"jo", "jose"},
+            {"jos", "jose p"},
+            {"ni", "ñino"},
+            {"pe", "penaflor"},
+            {"dela", "dela cruz"},
+            {"o", "o'neil"},
+            {"bs", "bscs"},
+            {"an", "ana bs"},
+            {"kris", "kristine r"},
+    };
+
+    private Context context;
+    private DBHelper db;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DBHelper.DATABASE);
+        db = DBHelper.getInstance(context);
+        db.bulkInsert(SyntheticRoster.iterator(ROSTER, SyntheticRoster.SEED), DBHelper.DEFAULT_BATCH_SIZE, null);
+        db.addStudent(new Student("María Peñaflor", "BSCS", null));
+        db.addStudent(new Student("Ñiño Santos", "BSIT", null));
+    }
+
+    @After
+    public void tearDown() {
+        DBHelper.closeInstance();
+        context.deleteDatabase(DBHelper.DATABASE);
+    }
+
+    @Test
+    public void narrowingFindsWhatFreshSearchFinds() {
+        for (String[] extension : EXTENSIONS) {
+            StudentColumns typed = search(extension[0]);
+            StudentColumns narrowed = typed.narrow(SearchText.tokens(extension[1]), () -> false);
+            List<Integer> fresh = sortedIds(search(extension[1]));
+
+            assertTrue(extension[1], !fresh.isEmpty());
+            assertEquals(extension[0] + " -> " + extension[1], fresh, sortedIds(narrowed));
+        }
+    }
+
+    @Test
+    public void accentsAreFoldedInBothPaths() {
+        assertEquals(sortedIds(search("maria penaflor")), sortedIds(search("maría peñaflor")));
+        assertEquals(sortedIds(search("nino")), sortedIds(search("ñiño")));
+    }
+
+    private StudentColumns search(String query) {
+        StudentColumns results = db.searchColumns(query, SearchPipeline.MAX_IN_MEMORY + 1, null);
+        assertTrue(query, results.size() <= SearchPipeline.MAX_IN_MEMORY);
+        return results;
+    }
+
+    private static List<Integer> sortedIds(StudentColumns columns) {
+        List<Integer> ids = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) ids.add(columns.idAt(i));
+        Collections.sort(ids);
+        return ids;
+    }
+}
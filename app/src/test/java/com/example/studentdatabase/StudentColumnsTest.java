@@ -0,0 +1,99 @@
+package com.example.studentdatabase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Round trips through {@link StudentColumns} and checks {@link
+ * StudentColumns#narrow} against a plain filter over the same students.
+ */
+public class StudentColumnsTest {
+
+    private static final String[] QUERIES = {
+            "ma", "maria", "maria s", "jose", "josé", "cruz bs", "bsit", "dela", "de la", "ñ", "zz", "",
+    };
+
+    @Test
+    public void studentsRoundTrip() {
+        List<Student> students = mixedRoster();
+        StudentColumns columns = build(students);
+
+        assertEquals(students.size(), columns.size());
+        for (int i = 0; i < students.size(); i++) {
+            assertEquals(students.get(i), columns.get(i));
+            assertEquals(students.get(i).getId(), columns.idAt(i));
+        }
+    }
+
+    @Test
+    public void rowWithoutNameReadsBackNull() {
+        StudentColumns columns = new StudentColumns.Builder(1)
+                .add(7, null, "BSCS", null)
+                .add(8, "", "BSIT", null)
+                .build();
+
+        assertNull(columns.get(0).getName());
+        assertEquals("", columns.get(1).getName());
+        assertEquals(Arrays.asList(7), ids(columns.narrow(SearchText.tokens("bscs"), () -> false)));
+        assertEquals(Arrays.asList(7, 8), ids(columns.narrow(SearchText.tokens("b"), () -> false)));
+    }
+
+    @Test
+    public void narrowMatchesPlainFilter() {
+        List<Student> students = mixedRoster();
+        StudentColumns columns = build(students);
+
+        for (String query : QUERIES) {
+            String[] tokens = SearchText.tokens(query);
+            List<Integer> expected = new ArrayList<>();
+            for (Student student : students) {
+                if (SearchText.matches(student.getSearchKey(), tokens)) expected.add(student.getId());
+            }
+            assertEquals(query, expected, ids(columns.narrow(tokens, () -> false)));
+        }
+    }
+
+    @Test
+    public void narrowingTwiceEqualsNarrowingOnce() {
+        StudentColumns columns = build(mixedRoster());
+        StudentColumns typed = columns.narrow(SearchText.tokens("ma"), () -> false);
+
+        assertEquals(ids(columns.narrow(SearchText.tokens("maria s"), () -> false)),
+                ids(typed.narrow(SearchText.tokens("maria s"), () -> false)));
+    }
+
+    @Test
+    public void staleNarrowIsAbandoned() {
+        StudentColumns columns = build(mixedRoster());
+        assertNull(columns.narrow(SearchText.tokens("ma"), () -> true));
+    }
+
+    // --- A synthetic roster, grown past the builder's first capacity, plus the awkward rows ---
+    private static List<Student> mixedRoster() {
+        List<Student> students = SyntheticRoster.withIds(3000, SyntheticRoster.SEED);
+        int id = students.size();
+        students.add(new Student(++id, null, "BSCS", null));
+        students.add(new Student(++id, "José Peñaflor", null, "photo.webp"));
+        students.add(new Student(++id, "Ñino de la Cruz", "BSIT", "file:///data/images/ab.webp"));
+        students.add(new Student(++id, "María Santos", "BSCS", "file:///data/images/cd.webp"));
+        return students;
+    }
+
+    private static StudentColumns build(List<Student> students) {
+        StudentColumns.Builder builder = new StudentColumns.Builder(16);
+        for (Student s : students) builder.add(s.getId(), s.getName(), s.getCourse(), s.getImage());
+        return builder.build();
+    }
+
+    private static List<Integer> ids(StudentColumns columns) {
+        List<Integer> ids = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) ids.add(columns.idAt(i));
+        return ids;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.studentdatabase;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link StudentSync} against {@link FakeRegistrar} on a fresh database,
+ * checking that a sync sends and fetches only what changed since the last one.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class StudentSyncTest {
+
+    private static final int ROSTER = 1200;  // more than two pages
+
+    private Context context;
+    private DBHelper db;
+    private FakeRegistrar registrar;
+    private StudentSync sync;
+
+    @Before
+    public void setUp() throws IOException {
+        context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DBHelper.DATABASE);
+        db = DBHelper.getInstance(context);
+        StudentRepository repository = new StudentRepository(db, ThumbnailCache.getInstance(context),
+                ImageStore.getInstance(context), new File(context.getFilesDir(), "sync_test_snapshot.bin"));
+        registrar = new FakeRegistrar();
+        sync = new StudentSync(context, repository, registrar.url());
+    }
+
+    @After
+    public void tearDown() {
+        registrar.close();
+        DBHelper.closeInstance();
+        context.deleteDatabase(DBHelper.DATABASE);
+    }
+
+    @Test
+    public void pushesOnlyRowsChangedSinceLastSync() throws IOException {
+        db.bulkInsert(SyntheticRoster.iterator(ROSTER, SyntheticRoster.SEED), DBHelper.DEFAULT_BATCH_SIZE, null);
+
+        StudentSync.Result first = sync.sync();
+        assertEquals(ROSTER, first.getPushed());
+        assertEquals(0, first.getPulled());
+        assertEquals(3, registrar.pushRequests);
+        assertEquals(ROSTER, registrar.liveRows().size());
+
+        registrar.resetCounts();
+        StudentSync.Result idle = sync.sync();
+        assertEquals(0, idle.getPushed());
+        assertEquals(0, registrar.pushRequests);
+        assertEquals(0, registrar.changesSent);
+
+        Student edited = db.getStudentById(7);
+        edited.setCourse("BSMath");
+        db.updateStudent(edited);
+        db.deleteStudent(8);
+
+        registrar.resetCounts();
+        StudentSync.Result delta = sync.sync();
+        assertEquals(2, delta.getPushed());
+        assertEquals(0, delta.getPulled());
+        assertEquals(1, registrar.pushRequests);
+        assertEquals(2, registrar.changesReceived);
+        assertEquals(ROSTER - 1, registrar.liveRows().size());
+        assertNotNull(findRemote(edited.getName(), "BSMath"));
+
+        // Sent, so the tombstone can go
+        assertTrue(db.getDeletedIds(10).contains(8));
+    }
+
+    @Test
+    public void neverSyncedDeleteIsNotSent() throws IOException {
+        long id = db.addStudent(new Student("Ana Cruz", "BSCS", null));
+        db.deleteStudent((int) id);
+
+        StudentSync.Result result = sync.sync();
+        assertEquals(0, result.getPushed());
+        assertEquals(0, registrar.pushRequests);
+        assertTrue(db.getDeletedIds(10).contains((int) id));
+    }
+
+    @Test
+    public void pullsRemoteInsertsEditsAndDeletes() throws IOException {
+        registrar.put("r1", "Ana Cruz", "BSCS", 1_000);
+        registrar.put("r2", "Mark Reyes", "BSIT", 1_000);
+
+        StudentSync.Result first = sync.sync();
+        assertEquals(2, first.getPulled());
+        assertEquals(0, first.getPushed());
+        assertEquals(2, db.countStudents());
+        assertEquals(Integer.valueOf(1), db.getCourseCounts().get("BSCS"));
+
+        registrar.put("r1", "Ana Cruz", "BSN", 2_000);
+        registrar.delete("r2", 2_000);
+
+        StudentSync.Result second = sync.sync();
+        assertEquals(2, second.getPulled());
+        assertEquals(0, second.getPushed());
+        List<Student> students = db.getAllStudents();
+        assertEquals(1, students.size());
+        assertEquals("BSN", students.get(0).getCourse());
+        assertNull(db.getCourseCounts().get("BSCS"));
+        assertNull(db.getCourseCounts().get("BSIT"));
+
+        // Applied rows are not pending, so they don't echo back
+        assertEquals(0, registrar.pushRequests);
+    }
+
+    @Test
+    public void laterLocalEditWinsConflict() throws IOException {
+        db.addStudent(new Student("Ana Cruz", "BSCS", null));
+        sync.sync();
+        FakeRegistrar.Row remote = registrar.liveRows().get(0);
+
+        registrar.put(remote.id, "Ana Cruz", "BSIT", 0);  // edited long ago on another device
+        Student local = db.getAllStudents().get(0);
+        local.setCourse("BSN");
+        db.updateStudent(local);
+
+        StudentSync.Result result = sync.sync();
+        assertEquals(1, result.getConflicts());
+        assertEquals(1, result.getPushed());
+        assertEquals("BSN", db.getStudentById(local.getId()).getCourse());
+        assertEquals("BSN", registrar.row(remote.id).course);
+    }
+
+    @Test
+    public void laterRemoteEditWinsConflict() throws IOException {
+        db.addStudent(new Student("Ana Cruz", "BSCS", null));
+        sync.sync();
+        FakeRegistrar.Row remote = registrar.liveRows().get(0);
+
+        Student local = db.getAllStudents().get(0);
+        local.setCourse("BSN");
+        db.updateStudent(local);
+        registrar.put(remote.id, "Ana Cruz", "BSIT", System.currentTimeMillis() + 60_000);
+
+        StudentSync.Result result = sync.sync();
+        assertEquals(1, result.getConflicts());
+        assertEquals(0, result.getPushed());
+        assertEquals("BSIT", db.getStudentById(local.getId()).getCourse());
+        assertEquals("BSIT", registrar.row(remote.id).course);
+    }
+
+    @Test
+    public void storedPhotoStaysOnDeviceThroughRoundTrip() throws IOException {
+        String stored = ImageStore.getInstance(context).getUriPrefix() + "0123abcd.webp";
+        long id = db.addStudent(new Student("Ana Cruz", "BSCS", stored));
+
+        StudentSync.Result pushed = sync.sync();
+        assertEquals(1, pushed.getPushed());
+        FakeRegistrar.Row remote = registrar.liveRows().get(0);
+        assertNull(remote.image);
+
+        // Edited elsewhere; the edit comes back without a photo, so ours stays
+        registrar.put(remote.id, "Ana Cruz", "BSN", System.currentTimeMillis() + 60_000);
+        StudentSync.Result pulled = sync.sync();
+        assertEquals(1, pulled.getPulled());
+        Student local = db.getStudentById((int) id);
+        assertEquals("BSN", local.getCourse());
+        assertEquals(stored, local.getImage());
+    }
+
+    @Test
+    public void portablePhotoRoundTrips() throws IOException {
+        String photo = "https://registrar.example.edu/photos/ana.jpg";
+        long id = db.addStudent(new Student("Ana Cruz", "BSCS", photo));
+        sync.sync();
+        FakeRegistrar.Row remote = registrar.liveRows().get(0);
+        assertEquals(photo, remote.image);
+
+        String replaced = "https://registrar.example.edu/photos/ana-2.jpg";
+        registrar.put(remote.id, "Ana Cruz", "BSCS", replaced, System.currentTimeMillis() + 60_000);
+        // Another device's file can't load here and is not applied
+        registrar.put("r2", "Mark Reyes", "BSIT", "file:///data/user/0/other/files/images/ff.webp", 1_000);
+        sync.sync();
+        assertEquals(replaced, db.getStudentById((int) id).getImage());
+        for (Student student : db.getAllStudents()) {
+            if (student.getName().equals("Mark Reyes")) assertNull(student.getImage());
+        }
+    }
+
+    @Test
+    public void interruptedPullResumesAfterLastPage() throws IOException {
+        for (int i = 0; i < ROSTER; i++) {
+            registrar.put("r" + i, "Student " + i, "BSCS", 1_000);
+        }
+
+        registrar.failAfter(1);
+        try {
+            sync.sync();
+            fail("Expected the second page to fail");
+        } catch (IOException expected) {
+            // first page landed
+        }
+        assertEquals(StudentSync.PAGE_SIZE, db.countStudents());
+
+        registrar.failAfter(-1);
+        registrar.resetCounts();
+        StudentSync.Result result = sync.sync();
+        assertEquals(ROSTER - StudentSync.PAGE_SIZE, result.getPulled());
+        assertEquals(ROSTER - StudentSync.PAGE_SIZE, registrar.changesSent);
+        assertEquals(2, registrar.pullRequests);
+        assertEquals(ROSTER, db.countStudents());
+        assertEquals(0, registrar.pushRequests);
+    }
+
+    private FakeRegistrar.Row findRemote(String name, String course) {
+        for (FakeRegistrar.Row row : registrar.liveRows()) {
+            if (row.name.equals(name) && row.course.equals(course)) return row;
+        }
+        return null;
+    }
+}
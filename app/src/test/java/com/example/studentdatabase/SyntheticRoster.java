@@ -0,0 +1,78 @@
+package com.example.studentdatabase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic fake students for the benchmarks and the DB timing harness.
+ * The same seed always gives the same roster, so runs can be compared.
+ * Some names carry accents and apostrophes to exercise search normalization.
+ */
+public final class SyntheticRoster {
+
+    public static final long SEED = 42L;
+
+    private static final String[] FIRST = {
+            "Maria", "José", "Juan", "Ana", "Mark", "Angel", "Kristine", "John Paul",
+            "Nicole", "Christian", "Jasmine", "Renz", "Patricia", "Miguel", "Andrea", "Ñino"
+    };
+    private static final String[] LAST = {
+            "Santos", "Reyes", "Cruz", "Bautista", "Ocampo", "Garcia", "Mendoza", "Villanueva",
+            "Dela Cruz", "Castillo", "O'Neil", "Aquino", "Ramos", "Navarro", "Peñaflor", "Tan"
+    };
+    private static final String[] COURSES = {
+            "BSCS", "BSIT", "BSCpE", "BSIS", "BSECE", "BSDS", "BSEE", "BSME", "BSCE", "BSArch",
+            "BSA", "BSBA", "BSN", "BSPsych", "BSBio", "BSMath", "BSEd", "BSCrim", "BSHM", "BSTM", "BSP"
+    };
+
+    private SyntheticRoster() {}
+
+    /**
+     * Students generated lazily, so a large import never holds them all.
+     */
+    public static Iterator<Student> iterator(int count, long seed) {
+        Random random = new Random(seed);
+        return new Iterator<Student>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Student next() {
+                return student(random, next++);
+            }
+        };
+    }
+
+    public static List<Student> list(int count, long seed) {
+        List<Student> students = new ArrayList<>(count);
+        Iterator<Student> it = iterator(count, seed);
+        while (it.hasNext()) {
+            students.add(it.next());
+        }
+        return students;
+    }
+
+    /**
+     * As {@link #list}, with ids 1..count as if read back from the table.
+     */
+    public static List<Student> withIds(int count, long seed) {
+        List<Student> students = list(count, seed);
+        for (int i = 0; i < students.size(); i++) {
+            students.get(i).setId(i + 1);
+        }
+        return students;
+    }
+
+    private static Student student(Random random, int n) {
+        String name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)];
+        String course = COURSES[random.nextInt(COURSES.length)];
+        String image = "content://media/external/images/media/" + (1000 + n);
+        return new Student(name, course, image);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.studentdatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Candidate recall, ranking and the edit-distance cutoff of
+ * {@link TrigramIndex}, on a roster small enough to reason about.
+ */
+public class TrigramIndexTest {
+
+    private static final int JOHN = 1, JON = 2, JOAN = 3, HONEY = 4, MARIA = 5, MARK = 6;
+
+    private TrigramIndex index;
+
+    @Before
+    public void setUp() {
+        index = new TrigramIndex();
+        index.beginLoad();
+        index.put(JOHN, "John Cruz", "BSCS");
+        index.put(JON, "Jon Dela Cruz", "BSIT");
+        index.put(JOAN, "Joan Reyes", "BSN");
+        index.put(HONEY, "Honey Lim", "BSCS");
+        index.put(MARIA, "María Santos", "BSCS");
+        index.put(MARK, "Mark Reyes", "BSIT");
+    }
+
+    @Test
+    public void transpositionAtTheStartIsFound() {
+        // "jhon" shares no trigram with "john"
+        assertTrue(contains(index.search("jhon", 10), JOHN));
+    }
+
+    @Test
+    public void everyKindOfTypoIsFound() {
+        String[] typos = {
+                "mraia santos",   // transposition
+                "marja santos",   // substitution
+                "mria santos",    // deletion
+                "marria santos",  // insertion
+                "maria santso",   // in the last word
+                "maria sant",     // last word still being typed
+        };
+        for (String typo : typos) {
+            assertTrue(typo, contains(index.search(typo, 10), MARIA));
+        }
+    }
+
+    @Test
+    public void closestMatchRanksFirst() {
+        assertEquals(JOHN, index.search("john", 10)[0]);
+        assertEquals(JON, index.search("jon", 10)[0]);
+        assertEquals(JOAN, index.search("joan reyes", 10)[0]);
+    }
+
+    @Test
+    public void courseWordsAreScored() {
+        assertArrayEquals(new int[]{JON}, index.search("jon bsit", 10));
+    }
+
+    @Test
+    public void tooManyEditsAreCutOff() {
+        assertEquals(1, TrigramIndex.maxDistance(4));
+        assertEquals(2, TrigramIndex.maxDistance(8));
+        assertEquals(3, TrigramIndex.maxDistance(9));
+
+        assertArrayEquals(new int[]{JOHN}, index.search("jxhn cruz", 10));  // one edit
+        assertEquals(0, index.search("jxyn cruz", 10).length);              // two, in four letters
+        assertEquals(0, index.search("zzzz", 10).length);
+    }
+
+    @Test
+    public void limitKeepsTheBest() {
+        int[] all = index.search("jon", 10);
+        int[] best = index.search("jon", 1);
+        assertArrayEquals(new int[]{all[0]}, best);
+    }
+
+    @Test
+    public void removedAndRenamedStudentsFollowTheirRows() {
+        index.remove(JOHN);
+        assertFalse(contains(index.search("john cruz", 10), JOHN));
+
+        index.put(HONEY, "Honey Bautista", "BSCS");
+        assertTrue(contains(index.search("honey bautsita", 10), HONEY));
+        assertFalse(contains(index.search("honey lim", 10), HONEY));
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int candidate : ids) {
+            if (candidate == id) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+// JVM microbenchmarks for the app's plain-Java hot paths.
+// Run: ./gradlew :benchmark:jmh  (JSON results in build/results/jmh/results.json)
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// AGP sets this for the app; plain javac uses the platform charset, and SyntheticRoster has "José"
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+// Compiled straight from the app's sources, so the numbers describe the code that ships
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java", "../app/src/test/java"))
+            include(
+                "com/example/studentdatabase/Student.java",
+                "com/example/studentdatabase/SearchText.java",
+                "com/example/studentdatabase/StudentColumns.java",
+                "com/example/studentdatabase/TrigramIndex.java",
+                "com/example/studentdatabase/ImageScaling.java",
+                "com/example/studentdatabase/RowChanges.java",
+                "com/example/studentdatabase/SyntheticRoster.java",
+            )
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.annotation)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // A million students with their search keys
+    jvmArgs.set(listOf("-Xmx3g"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
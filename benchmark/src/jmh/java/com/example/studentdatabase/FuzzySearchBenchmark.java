@@ -0,0 +1,41 @@
+package com.example.studentdatabase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Typo-tolerant lookups through {@link TrigramIndex}, the fallback when a
+ * search matches nothing as typed. Should stay well inside a frame.
+ */
+@State(Scope.Benchmark)
+public class FuzzySearchBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    // A transposition, two misspelled words, a misspelled prefix still being typed
+    @Param({"jonh", "mraia santso", "dela crz bs"})
+    public String query;
+
+    private TrigramIndex index;
+
+    @Setup
+    public void setUp() {
+        List<Student> roster = SyntheticRoster.withIds(size, SyntheticRoster.SEED);
+        index = new TrigramIndex();
+        index.beginLoad();
+        for (Student student : roster) {
+            index.put(student.getId(), student.getName(), student.getCourse());
+        }
+    }
+
+    @Benchmark
+    public int[] search() {
+        return index.search(query, 50);  // SearchPipeline.FUZZY_LIMIT
+    }
+}
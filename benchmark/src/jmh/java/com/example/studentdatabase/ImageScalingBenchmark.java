@@ -0,0 +1,40 @@
+package com.example.studentdatabase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Target size and subsample factor for typical phone photos, as computed
+ * before every thumbnail decode.
+ */
+@State(Scope.Benchmark)
+public class ImageScalingBenchmark {
+
+    // Width, height: 12/48/50MP camera output, portrait and landscape, and screenshots
+    private static final int[][] SOURCES = {
+            {4032, 3024}, {3024, 4032}, {8000, 6000}, {6000, 8000}, {8160, 6120},
+            {1080, 2400}, {2400, 1080}, {1920, 1080}, {640, 480}, {512, 512}
+    };
+    private static final int THUMB = 263;    // 100dp at 2.625x density
+    private static final int PREVIEW = 500;  // AddMenu preview
+
+    @Benchmark
+    public void thumbnailSizes(Blackhole blackhole) {
+        scaleAll(THUMB, blackhole);
+    }
+
+    @Benchmark
+    public void previewSizes(Blackhole blackhole) {
+        scaleAll(PREVIEW, blackhole);
+    }
+
+    private static void scaleAll(int maxSize, Blackhole blackhole) {
+        for (int[] source : SOURCES) {
+            int[] target = ImageScaling.targetSize(source[0], source[1], maxSize);
+            blackhole.consume(target);
+            blackhole.consume(ImageScaling.sampleSize(source[0], source[1], target[0], target[1]));
+        }
+    }
+}
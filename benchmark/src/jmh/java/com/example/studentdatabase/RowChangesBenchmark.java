@@ -0,0 +1,52 @@
+package com.example.studentdatabase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diffing a reloaded page against the rows on screen, as the pager does
+ * after every invalidate. One page is 50 rows; larger sizes show how the
+ * comparison scales for a long in-memory result list.
+ */
+@State(Scope.Benchmark)
+public class RowChangesBenchmark {
+
+    @Param({"50", "1000", "100000"})
+    public int size;
+
+    // none: reload found nothing new; one: a single edit; all: every row renamed
+    @Param({"none", "one", "all"})
+    public String edits;
+
+    private List<Student> old;
+    private List<Student> reloaded;
+
+    @Setup
+    public void setUp() {
+        old = SyntheticRoster.withIds(size, SyntheticRoster.SEED);
+        // Fresh objects with equal content, as a reload returns
+        reloaded = new ArrayList<>(size);
+        for (Student s : old) {
+            Student copy = new Student(s.getId(), s.getName(), s.getCourse(), s.getImage());
+            reloaded.add(copy);
+        }
+        if (edits.equals("one")) {
+            reloaded.get(size / 2).setName("Edited");
+        } else if (edits.equals("all")) {
+            for (Student s : reloaded) s.setName(s.getName() + " Jr.");
+        }
+    }
+
+    @Benchmark
+    public void dispatch(Blackhole blackhole) {
+        RowChanges.dispatch(0, size, old, reloaded,
+                (start, count, payload) -> blackhole.consume(start + count));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.studentdatabase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * In-memory search matching as {@link SearchPipeline} narrows a result set:
+ * query tokens against each student's normalized name and course, over
+ * Student objects and over the columnar {@link StudentColumns}.
+ */
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    // A common prefix, an accent-folded name, and a two-word name + course query
+    @Param({"ma", "jose", "dela bsit"})
+    public String query;
+
+    private List<Student> roster;
+    private StudentColumns columns;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        roster = SyntheticRoster.withIds(size, SyntheticRoster.SEED);
+        for (Student student : roster) {
+            student.getSearchKey();  // keys are built once per student and then reused
+        }
+        StudentColumns.Builder builder = new StudentColumns.Builder(size);
+        for (Student student : roster) {
+            builder.add(student.getId(), student.getName(), student.getCourse(), student.getImage());
+        }
+        columns = builder.build();
+        tokens = SearchText.tokens(query);
+    }
+
+    @Benchmark
+    public int matchCachedKeys() {
+        int matches = 0;
+        for (Student student : roster) {
+            if (SearchText.matches(student.getSearchKey(), tokens)) matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int matchColumns() {
+        return columns.narrow(tokens, () -> false).size();
+    }
+
+    // Cost of the first search over freshly loaded rows, when keys are still unbuilt
+    @Benchmark
+    public void normalizeKeys(Blackhole blackhole) {
+        for (Student student : roster) {
+            blackhole.consume(SearchText.normalize(student.getName()) + SearchText.normalize(student.getCourse()));
+        }
+    }
+
+    @Benchmark
+    public String[] tokenizeQuery() {
+        return SearchText.tokens(query);
+    }
+}